@@ -0,0 +1,132 @@
+package sample.context.report.csv;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import sample.context.report.csv.CsvLayout.CsvEngine;
+import sample.context.report.csv.CsvWriter.CsvStream;
+
+/**
+ * The benchmark of CsvReader / CsvWriter.
+ * <p>The score is rows per second, so "gc.alloc.rate.norm" of the gc profiler is the allocation per row.
+ * The throughput in bytes is reported by the "bytes" counter. (MB/s = bytes / 1024 / 1024)
+ * <p>"appendRow" compares CsvStream (Standard) with CsvEncoder (Buffered) by the engine parameter.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class CsvBenchmark {
+    public static final int Rows = 1000;
+
+    @Benchmark
+    @OperationsPerInvocation(Rows)
+    public void read(CsvState state, ByteCounter counter, Blackhole bh) {
+        CsvReader.of(state.data, state.layout).read((lineNum, cols) -> bh.consume(cols));
+        counter.bytes += state.data.length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Rows)
+    public void parseRow(CsvState state, ByteCounter counter, Blackhole bh) {
+        CsvReader reader = CsvReader.of(state.data, state.layout);
+        for (String line : state.lines) {
+            bh.consume(reader.parseRow(line));
+        }
+        counter.bytes += state.data.length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Rows)
+    public void appendRow(CsvState state, ByteCounter counter, Blackhole bh) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(state.data.length);
+        CsvStream stream = new CsvStream(state.layout, out);
+        for (List<Object> row : state.rows) {
+            stream.appendRow(row);
+        }
+        stream.flush();
+        bh.consume(out);
+        counter.bytes += out.size();
+    }
+
+    @State(Scope.Benchmark)
+    public static class CsvState {
+        /**
+         * "narrow" is 5 columns, "wide" is 50 columns.
+         * (the odd columns are Long / BigDecimal / LocalDateTime in turn, the even columns are String)
+         */
+        @Param({ "narrow", "wide" })
+        public String shape;
+        /** "quoted" contains the delimiter, the quote and EOL in the columns */
+        @Param({ "plain", "quoted" })
+        public String quoting;
+        @Param({ "ascii", "multibyte" })
+        public String text;
+        @Param({ "UTF-8", "Shift_JIS" })
+        public String charset;
+        @Param({ "Standard", "Buffered" })
+        public CsvEngine engine;
+
+        private CsvLayout layout;
+        private List<List<Object>> rows;
+        private List<String> lines;
+        private byte[] data;
+
+        @Setup(Level.Trial)
+        public void prepare() {
+            layout = new CsvLayout();
+            layout.setCharset(charset);
+            layout.setEngine(engine);
+            int columns = "wide".equals(shape) ? 50 : 5;
+            rows = new ArrayList<>(Rows);
+            lines = new ArrayList<>(Rows);
+            for (int i = 0; i < Rows; i++) {
+                List<Object> row = new ArrayList<>(columns);
+                for (int j = 0; j < columns; j++) {
+                    row.add(column(i, j));
+                }
+                rows.add(row);
+            }
+            CsvWriter.of(new ByteArrayOutputStream(), layout).write(stream -> {
+                rows.forEach(row -> lines.add(stream.row(row)));
+            });
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            CsvWriter.of(out, layout).write(stream -> rows.forEach(stream::appendRow));
+            data = out.toByteArray();
+        }
+
+        private Object column(int row, int column) {
+            if (column % 6 == 1) {
+                return (long) row * column;
+            } else if (column % 6 == 3) {
+                return BigDecimal.valueOf(row * 100L + column, 2);
+            } else if (column % 6 == 5) {
+                return LocalDateTime.of(2016, 1, 1, 0, 0).plusSeconds(row * 61L + column);
+            }
+            String v = "multibyte".equals(text) ? "日本語カラム" + row + "-" + column : "column" + row + "-" + column;
+            if ("quoted".equals(quoting) && column % 2 == 0) {
+                return "say \"" + v + "\",\r\nnext";
+            }
+            return v;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ByteCounter {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+}
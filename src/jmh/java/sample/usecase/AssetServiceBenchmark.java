@@ -0,0 +1,167 @@
+package sample.usecase;
+
+import java.math.BigDecimal;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+
+import sample.EntityTestSupport;
+import sample.context.*;
+import sample.context.actor.Actor;
+import sample.context.actor.Actor.ActorRoleType;
+import sample.context.audit.*;
+import sample.context.audit.AuditHandler.AuditPersister;
+import sample.context.cache.CacheHandler;
+import sample.context.lock.IdLockHandler;
+import sample.context.lock.IdLockEngine.StripedLockEngine;
+import sample.context.orm.*;
+import sample.model.account.FiAccount;
+import sample.model.asset.*;
+import sample.model.asset.CashInOut.RegCashOut;
+import sample.model.master.SelfFiAccount;
+
+/**
+ * The benchmark of the withdrawal request. (AssetService#withdraw -> CashInOut#withdraw -> Asset#canWithdraw)
+ * <p>It runs against H2 with the container-less wiring of EntityTestSupport.
+ * "hot" withdraws from one account in all the threads, "spread" withdraws from the random account.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AssetServiceBenchmark {
+    private static final String ccy = "JPY";
+
+    @Benchmark
+    @Threads(1)
+    public Long withdraw1(WithdrawState state) {
+        return state.withdraw();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Long withdraw8(WithdrawState state) {
+        return state.withdraw();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Long withdraw64(WithdrawState state) {
+        return state.withdraw();
+    }
+
+    @State(Scope.Benchmark)
+    public static class WithdrawState extends EntityTestSupport {
+        /** The number of the unprocessed CashInOut and the unrealized Cashflow per account */
+        @Param({ "0", "100", "1000" })
+        public int pending;
+        @Param({ "hot", "spread" })
+        public String contention;
+        @Param({ "false", "true" })
+        public boolean cache;
+        @Param({ "64" })
+        public int accounts;
+
+        private AssetService service;
+        private long seedId;
+
+        @Override
+        protected void setupPreset() {
+            targetEntities(FiAccount.class, SelfFiAccount.class, CashInOut.class, Cashflow.class,
+                    CashBalance.class, AuditActor.class, AuditEvent.class, AuditTerm.class);
+        }
+
+        @Override
+        protected void setupRepository() {
+            dh = new DomainHelper(
+                    SimpleProvider.of(session),
+                    SimpleProvider.of(time),
+                    SimpleProvider.of(new AppSettingHandler(settingMap)),
+                    SimpleProvider.of(new CacheHandler(cache, 100000, Duration.ofMinutes(10), Optional.empty())));
+            setupEntityManagerFactory();
+            rep = new BenchRepository((SessionFactory) emf, dh, Optional.of(new OrmInterceptor(session, time)));
+        }
+
+        @Override
+        protected void before() {
+            LocalDate baseDay = businessDay.day();
+            tx(() -> {
+                fixtures.selfFiAcc(Remarks.CashOut, ccy).save(rep);
+                IntStream.range(0, accounts).mapToObj(this::accountId).forEach(accId -> {
+                    fixtures.fiAcc(accId, Remarks.CashOut, ccy).save(rep);
+                    fixtures.cb(accId, baseDay, ccy, "1000000000").save(rep);
+                    rep.saveAll(IntStream.range(0, pending)
+                            .mapToObj(i -> fixtures.cio(accId, "1", true))
+                            .collect(Collectors.toList()));
+                    rep.saveAll(IntStream.range(0, pending)
+                            .mapToObj(i -> fixtures.cf(accId, "1", baseDay, businessDay.day(1 + i % 3)))
+                            .collect(Collectors.toList()));
+                });
+                List<Long> maxId = rep.tmpl().find("select max(c.id) from CashInOut c");
+                seedId = Optional.ofNullable(maxId.get(0)).orElse(0L);
+            });
+            service = new AssetService(
+                    (DefaultRepository) rep, txm, session,
+                    new AuditHandler(session, new AuditPersister(rep, txm)),
+                    new IdLockHandler(new StripedLockEngine(1024), Optional.empty()),
+                    businessDay, event -> {}, Duration.ofMinutes(1));
+        }
+
+        /** Remove the withdrawals of the previous iteration, so the pending rows do not grow. */
+        @Setup(Level.Iteration)
+        public void reset() {
+            tx(() -> {
+                rep.tmpl().execute("delete from CashInOut c where c.id>?1", seedId);
+                rep.tmpl().execute("delete from AuditActor");
+            });
+            dh.cache().evictAll(ProjectedBalance.CacheRegion);
+        }
+
+        @Setup(Level.Trial)
+        public void prepare() {
+            setup();
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            cleanup();
+        }
+
+        public Long withdraw() {
+            String accId = "hot".equals(contention)
+                    ? accountId(0)
+                    : accountId(ThreadLocalRandom.current().nextInt(accounts));
+            session.bind(new Actor(accId, ActorRoleType.User));
+            try {
+                return service.withdraw(new RegCashOut(accId, ccy, BigDecimal.ONE));
+            } finally {
+                session.unbind();
+            }
+        }
+
+        private String accountId(int i) {
+            return "acc" + i;
+        }
+    }
+
+    public static class BenchRepository extends DefaultRepository {
+        public BenchRepository(SessionFactory sf, DomainHelper dh, Optional<OrmInterceptor> interceptor) {
+            super(sf, dh, interceptor);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public EntityManager em() {
+            return SharedEntityManagerCreator.createSharedEntityManager(this.sf());
+        }
+    }
+
+}
@@ -129,6 +129,8 @@ public class ValidationException extends RuntimeException {
         String DuplicateId = "error.duplicateId";
 
         String ActionUnprocessing = "error.ActionStatusType.unprocessing";
+
+        String IdLockTimeout = "error.IdLock.timeout";
     }
 
 }
@@ -3,6 +3,7 @@ package sample.context;
 import javax.inject.*;
 
 import sample.context.actor.*;
+import sample.context.cache.CacheHandler;
 
 /**
  * The access to the domain infrastructure layer component which is necessary in handling it.
@@ -14,14 +15,17 @@ public class DomainHelper {
     private final Provider<ActorSession> actorSession;
     private final Provider<Timestamper> time;
     private final Provider<AppSettingHandler> settingHandler;
+    private final Provider<CacheHandler> cache;
     
     public DomainHelper(
             Provider<ActorSession> actorSession,
             Provider<Timestamper> time,
-            Provider<AppSettingHandler> settingHandler) {
+            Provider<AppSettingHandler> settingHandler,
+            Provider<CacheHandler> cache) {
         this.actorSession = actorSession;
         this.time = time;
         this.settingHandler = settingHandler;
+        this.cache = cache;
     }
 
     /** Return a login user. */
@@ -45,4 +49,8 @@ public class DomainHelper {
         return settingHandler.get().update(id, value);
     }
 
+    public CacheHandler cache() {
+        return cache.get();
+    }
+
 }
@@ -1,9 +1,12 @@
 package sample.context.audit;
 
 import java.time.*;
+import java.util.*;
+import java.util.function.Consumer;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 
 import org.hibernate.criterion.MatchMode;
 
@@ -21,13 +24,16 @@ import sample.util.*;
  * The auditing log of actor.
  */
 @Entity
+@Table(indexes = { @Index(columnList = "startDate"), @Index(columnList = "messageHash"),
+        @Index(columnList = "errorReasonHash") })
 @Data
 @EqualsAndHashCode(callSuper = false)
-public class AuditActor extends OrmActiveRecord<AuditActor> {
+public class AuditActor extends OrmActiveRecord<AuditActor> implements AuditLog {
     private static final long serialVersionUID = 1l;
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_actor_seq")
+    @SequenceGenerator(name = "audit_actor_seq", sequenceName = "audit_actor_seq", allocationSize = IdAllocationSize)
     private Long id;
     @IdStr
     private String actorId;
@@ -45,6 +51,12 @@ public class AuditActor extends OrmActiveRecord<AuditActor> {
     /** The processing time (msec) */
     @DescriptionEmpty
     private String errorReason;
+    /** The hash of the message which refers to AuditTerm */
+    @Size(max = 64)
+    private String messageHash;
+    /** The hash of the error reason which refers to AuditTerm */
+    @Size(max = 64)
+    private String errorReasonHash;
     /** The processing time (msec) */
     private Long time;
     @NotNull
@@ -53,45 +65,107 @@ public class AuditActor extends OrmActiveRecord<AuditActor> {
     private LocalDateTime endDate;
 
     public AuditActor finish(final OrmRepository rep) {
-        LocalDateTime now = rep.dh().time().date();
-        setStatusType(ActionStatusType.Processed);
-        setEndDate(now);
-        setTime(DateUtils.between(startDate, endDate).get().toMillis());
-        return update(rep);
+        return end(ActionStatusType.Processed, null, rep.dh().time().date()).updateWithIndex(rep);
     }
 
     public AuditActor cancel(final OrmRepository rep, String errorReason) {
-        LocalDateTime now = rep.dh().time().date();
-        setStatusType(ActionStatusType.Cancelled);
-        setErrorReason(errorReason);
-        setEndDate(now);
-        setTime(DateUtils.between(startDate, endDate).get().toMillis());
-        return update(rep);
+        return end(ActionStatusType.Cancelled, errorReason, rep.dh().time().date()).updateWithIndex(rep);
     }
 
     public AuditActor error(final OrmRepository rep, String errorReason) {
-        LocalDateTime now = rep.dh().time().date();
-        setStatusType(ActionStatusType.Error);
+        return end(ActionStatusType.Error, errorReason, rep.dh().time().date()).updateWithIndex(rep);
+    }
+
+    /** Index the texts and update the log. (the log which is not saved yet is inserted) */
+    private AuditActor updateWithIndex(final OrmRepository rep) {
+        if (id == null) {
+            AuditTerm.index(rep, this);
+        } else {
+            AuditTerm.indexErrorReason(rep, this);
+        }
+        return update(rep);
+    }
+
+    /** Change the status at the end date. (it is not updated) */
+    public AuditActor end(ActionStatusType statusType, String errorReason, LocalDateTime now) {
+        setStatusType(statusType);
         setErrorReason(errorReason);
         setEndDate(now);
         setTime(DateUtils.between(startDate, endDate).get().toMillis());
-        return update(rep);
+        return this;
     }
 
     public static AuditActor register(final OrmRepository rep, final RegAuditActor p) {
-        return p.create(rep.dh().actor(), rep.dh().time().date()).save(rep);
+        AuditActor v = p.create(rep.dh().actor(), rep.dh().time().date());
+        AuditTerm.index(rep, v);
+        return v.save(rep);
     }
 
     public static PagingList<AuditActor> find(final OrmRepository rep, final FindAuditActor p) {
-        return rep.tmpl().find(AuditActor.class, (criteria) -> {
-            return criteria
-                    .like(new String[] { "actorId", "source" }, p.actorId, MatchMode.ANYWHERE)
-                    .equal("category", p.category)
-                    .equal("roleType", p.roleType)
-                    .equal("statusType", p.statusType)
-                    .like(new String[] { "message", "errorReason" }, p.keyword, MatchMode.ANYWHERE)
-                    .between("startDate", p.fromDay.atStartOfDay(), DateUtils.dateTo(p.toDay));
-        }, p.page.sortIfEmpty(SortOrder.desc("startDate")));
+        return rep.tmpl().find(AuditActor.class, (criteria) -> condition(criteria, p),
+                p.page.sortIfEmpty(SortOrder.desc("startDate")));
+    }
+
+    /**
+     * Pass all the logs of the condition to the consumer in descending order of startDate. (the paging is ignored)
+     * <p>The log is detached from the session. (see OrmTemplate#scroll)
+     * @return the number of the logs
+     */
+    public static long scroll(final OrmRepository rep, final FindAuditActor p, final Consumer<AuditActor> consumer) {
+        return rep.tmpl().scroll(AuditActor.class,
+                (criteria) -> condition(criteria, p).sortDesc("startDate").result(), consumer);
+    }
+
+    /**
+     * Open the cursor of all the logs of the condition in descending order of startDate. (the paging is ignored)
+     * <p>The cursor is opened on the new read-only session. (see OrmRepository#openCursor)
+     */
+    public static OrmCursor<AuditActor> cursor(final OrmRepository rep, final FindAuditActor p) {
+        return rep.openCursor(tmpl -> tmpl.cursor(AuditActor.class,
+                (criteria) -> condition(criteria, p).sortDesc("startDate").result()));
+    }
+
+    private static OrmCriteria<AuditActor> condition(final OrmCriteria<AuditActor> criteria, final FindAuditActor p) {
+        return AuditTerm.match(criteria, new String[] { "message", "errorReason" }, p.keyword)
+                .like(new String[] { "actorId", "source" }, p.actorId, MatchMode.ANYWHERE)
+                .equal("category", p.category)
+                .equal("roleType", p.roleType)
+                .equal("statusType", p.statusType)
+                .between("startDate", p.fromDay.atStartOfDay(), DateUtils.dateTo(p.toDay));
+    }
+
+    /** Return the first start date of the logs. */
+    public static Optional<LocalDateTime> firstDate(final OrmRepository rep) {
+        List<LocalDateTime> v = rep.tmpl().find("select min(a.startDate) from AuditActor a");
+        return v.isEmpty() ? Optional.empty() : Optional.ofNullable(v.get(0));
+    }
+
+    /** Return the first start date of the logs which started at or after the date. */
+    public static Optional<LocalDateTime> firstDate(final OrmRepository rep, LocalDateTime from) {
+        List<LocalDateTime> v = rep.tmpl().find(
+                "select min(a.startDate) from AuditActor a where ?1 <= a.startDate", from);
+        return v.isEmpty() ? Optional.empty() : Optional.ofNullable(v.get(0));
+    }
+
+    /**
+     * Pass the logs which started in the month to the consumer in the order of id.
+     * <p>The log is detached from the session. (see OrmTemplate#scroll)
+     * @return the number of the logs
+     */
+    public static long scroll(final OrmRepository rep, YearMonth month, final Consumer<AuditActor> consumer) {
+        return rep.tmpl().scroll("from AuditActor a where ?1 <= a.startDate and a.startDate < ?2 order by a.id",
+                consumer, month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+    }
+
+    /**
+     * Delete the logs which started in the month by the bulk delete.
+     * @return the number of the deleted logs
+     */
+    public static int purge(final OrmRepository rep, YearMonth month) {
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        AuditTerm.purge(rep, AuditActor.class, from, to);
+        return rep.tmpl().execute("delete from AuditActor a where ?1 <= a.startDate and a.startDate < ?2", from, to);
     }
 
     @Data
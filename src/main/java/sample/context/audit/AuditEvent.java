@@ -1,11 +1,12 @@
 package sample.context.audit;
 
 import java.time.*;
+import java.util.*;
+import java.util.function.Consumer;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
-
-import org.hibernate.criterion.MatchMode;
+import javax.validation.constraints.Size;
 
 import lombok.*;
 import sample.ActionStatusType;
@@ -19,19 +20,28 @@ import sample.util.DateUtils;
  * The auditting log of the system event.
  */
 @Entity
+@Table(indexes = { @Index(columnList = "startDate"), @Index(columnList = "messageHash"),
+        @Index(columnList = "errorReasonHash") })
 @Data
 @EqualsAndHashCode(callSuper = false)
-public class AuditEvent extends OrmActiveRecord<AuditEvent> {
+public class AuditEvent extends OrmActiveRecord<AuditEvent> implements AuditLog {
     private static final long serialVersionUID = 1l;
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_event_seq")
+    @SequenceGenerator(name = "audit_event_seq", sequenceName = "audit_event_seq", allocationSize = IdAllocationSize)
     private Long id;
     private String category;
     private String message;
     @Enumerated(EnumType.STRING)
     private ActionStatusType statusType;
     private String errorReason;
+    /** The hash of the message which refers to AuditTerm */
+    @Size(max = 64)
+    private String messageHash;
+    /** The hash of the error reason which refers to AuditTerm */
+    @Size(max = 64)
+    private String errorReasonHash;
     /** The processing time (msec) */
     private Long time;
     @NotNull
@@ -40,45 +50,95 @@ public class AuditEvent extends OrmActiveRecord<AuditEvent> {
     private LocalDateTime endDate;
 
     public AuditEvent finish(final OrmRepository rep) {
-        LocalDateTime now = rep.dh().time().date();
-        setStatusType(ActionStatusType.Processed);
-        setEndDate(now);
-        setTime(DateUtils.between(startDate, endDate).get().toMillis());
-        return update(rep);
+        return end(ActionStatusType.Processed, null, rep.dh().time().date()).updateWithIndex(rep);
     }
 
     public AuditEvent cancel(final OrmRepository rep, String errorReason) {
-        LocalDateTime now = rep.dh().time().date();
-        setStatusType(ActionStatusType.Cancelled);
-        setErrorReason(errorReason);
-        setEndDate(now);
-        setTime(DateUtils.between(startDate, endDate).get().toMillis());
-        return update(rep);
+        return end(ActionStatusType.Cancelled, errorReason, rep.dh().time().date()).updateWithIndex(rep);
     }
 
     public AuditEvent error(final OrmRepository rep, String errorReason) {
-        LocalDateTime now = rep.dh().time().date();
-        setStatusType(ActionStatusType.Error);
+        return end(ActionStatusType.Error, errorReason, rep.dh().time().date()).updateWithIndex(rep);
+    }
+
+    /** Index the texts and update the log. (the log which is not saved yet is inserted) */
+    private AuditEvent updateWithIndex(final OrmRepository rep) {
+        if (id == null) {
+            AuditTerm.index(rep, this);
+        } else {
+            AuditTerm.indexErrorReason(rep, this);
+        }
+        return update(rep);
+    }
+
+    /** Change the status at the end date. (it is not updated) */
+    public AuditEvent end(ActionStatusType statusType, String errorReason, LocalDateTime now) {
+        setStatusType(statusType);
         setErrorReason(errorReason);
         setEndDate(now);
         setTime(DateUtils.between(startDate, endDate).get().toMillis());
-        return update(rep);
+        return this;
     }
 
     public static AuditEvent register(final OrmRepository rep, final RegAuditEvent p) {
-        return p.create(rep.dh().time().date()).save(rep);
+        AuditEvent v = p.create(rep.dh().time().date());
+        AuditTerm.index(rep, v);
+        return v.save(rep);
     }
 
     public static PagingList<AuditEvent> find(final OrmRepository rep, final FindAuditEvent p) {
         return rep.tmpl().find(AuditEvent.class, (criteria) -> {
-            return criteria
+            return AuditTerm.match(criteria, new String[] { "message", "errorReason" }, p.keyword)
                     .equal("category", p.category)
                     .equal("statusType", p.statusType)
-                    .like(new String[] { "message", "errorReason" }, p.keyword, MatchMode.ANYWHERE)
                     .between("startDate", p.fromDay.atStartOfDay(), DateUtils.dateTo(p.toDay));
         }, p.page.sortIfEmpty(SortOrder.desc("startDate")));
     }
 
+    /**
+     * Pass the logs which started on the day to the consumer in the order of id.
+     * <p>The log is detached from the session. (see OrmTemplate#scroll)
+     * @return the number of the logs
+     */
+    public static long scroll(final OrmRepository rep, LocalDate day, final Consumer<AuditEvent> consumer) {
+        return rep.tmpl().scroll("from AuditEvent a where a.startDate between ?1 and ?2 order by a.id", consumer,
+                day.atStartOfDay(), DateUtils.dateTo(day));
+    }
+
+    /** Return the first start date of the logs. */
+    public static Optional<LocalDateTime> firstDate(final OrmRepository rep) {
+        List<LocalDateTime> v = rep.tmpl().find("select min(a.startDate) from AuditEvent a");
+        return v.isEmpty() ? Optional.empty() : Optional.ofNullable(v.get(0));
+    }
+
+    /** Return the first start date of the logs which started at or after the date. */
+    public static Optional<LocalDateTime> firstDate(final OrmRepository rep, LocalDateTime from) {
+        List<LocalDateTime> v = rep.tmpl().find(
+                "select min(a.startDate) from AuditEvent a where ?1 <= a.startDate", from);
+        return v.isEmpty() ? Optional.empty() : Optional.ofNullable(v.get(0));
+    }
+
+    /**
+     * Pass the logs which started in the month to the consumer in the order of id.
+     * <p>The log is detached from the session. (see OrmTemplate#scroll)
+     * @return the number of the logs
+     */
+    public static long scroll(final OrmRepository rep, YearMonth month, final Consumer<AuditEvent> consumer) {
+        return rep.tmpl().scroll("from AuditEvent a where ?1 <= a.startDate and a.startDate < ?2 order by a.id",
+                consumer, month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+    }
+
+    /**
+     * Delete the logs which started in the month by the bulk delete.
+     * @return the number of the deleted logs
+     */
+    public static int purge(final OrmRepository rep, YearMonth month) {
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        AuditTerm.purge(rep, AuditEvent.class, from, to);
+        return rep.tmpl().execute("delete from AuditEvent a where ?1 <= a.startDate and a.startDate < ?2", from, to);
+    }
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -1,5 +1,6 @@
 package sample.context.audit;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.function.Supplier;
 
@@ -14,6 +15,7 @@ import sample.*;
 import sample.context.actor.*;
 import sample.context.audit.AuditActor.RegAuditActor;
 import sample.context.audit.AuditEvent.RegAuditEvent;
+import sample.context.audit.AuditPolicy.AuditDecision;
 import sample.context.orm.*;
 
 /**
@@ -21,6 +23,8 @@ import sample.context.orm.*;
  * <p>When you expect an implicit application, please examine the cooperation with AOP. 
  * <p>The target log is begun to write as well as Logger to the inspection table of the system schema.
  * (You can detect a replyless state by making the other transaction at a start and completion.)
+ * <p>The persistence of the log is decided by AuditPolicy per the category.
+ * The log which is not persisted at the start is persisted at the end of the cancel / error by one write.
  */
 @Slf4j
 @Singleton
@@ -30,10 +34,17 @@ public class AuditHandler {
 
     private final ActorSession session;
     private final AuditPersister persister;
-    
+    private final AuditPolicy policy;
+
     public AuditHandler(ActorSession session, AuditPersister persister) {
+        this(session, persister, AuditPolicy.always());
+    }
+
+    @Inject
+    public AuditHandler(ActorSession session, AuditPersister persister, AuditPolicy policy) {
         this.session = session;
         this.persister = persister;
+        this.policy = policy;
     }
 
     public <T> T audit(String message, final Supplier<T> callable) {
@@ -92,16 +103,26 @@ public class AuditHandler {
     }
 
     public <T> T callAudit(String category, String message, final Supplier<T> callable) {
+        AuditDecision decision = policy.decide(category);
         Optional<AuditActor> audit = Optional.empty();
         try {
             try { // So that the obstacle of the system schema does not affect the essential error
-                audit = Optional.of(persister.start(RegAuditActor.of(category, message)));
+                if (decision == AuditDecision.Persist) {
+                    audit = Optional.of(persister.start(RegAuditActor.of(category, message)));
+                } else if (decision == AuditDecision.OnError) {
+                    audit = Optional.of(persister.create(RegAuditActor.of(category, message)));
+                }
             } catch (Exception e) {
                 log.error(e.getMessage(), e);
             }
             T v = callable.get();
             try {
-                audit.ifPresent(persister::finish);
+                if (decision == AuditDecision.Persist) {
+                    audit.ifPresent(persister::finish);
+                    policy.persisted(category);
+                } else {
+                    policy.skipped(category);
+                }
             } catch (Exception e) {
                 log.error(e.getMessage(), e);
             }
@@ -109,6 +130,7 @@ public class AuditHandler {
         } catch (ValidationException e) {
             try {
                 audit.ifPresent((v) -> persister.cancel(v, e.getMessage()));
+                countEnd(category, audit);
             } catch (Exception ex) {
                 log.error(ex.getMessage(), ex);
             }
@@ -116,6 +138,7 @@ public class AuditHandler {
         } catch (RuntimeException e) {
             try {
                 audit.ifPresent((v) -> persister.error(v, e.getMessage()));
+                countEnd(category, audit);
             } catch (Exception ex) {
                 log.error(ex.getMessage(), ex);
             }
@@ -123,6 +146,7 @@ public class AuditHandler {
         } catch (Exception e) {
             try {
                 audit.ifPresent((v) -> persister.error(v, e.getMessage()));
+                countEnd(category, audit);
             } catch (Exception ex) {
                 log.error(ex.getMessage(), ex);
             }
@@ -130,17 +154,35 @@ public class AuditHandler {
         }
     }
 
+    private void countEnd(String category, Optional<?> audit) {
+        if (audit.isPresent()) {
+            policy.persisted(category);
+        } else {
+            policy.skipped(category);
+        }
+    }
+
     public <T> T callEvent(String category, String message, final Supplier<T> callable) {
+        AuditDecision decision = policy.decide(category);
         Optional<AuditEvent> audit = Optional.empty();
         try {
             try { // So that the obstacle of the system schema does not affect the essential error
-                audit = Optional.of(persister.start(RegAuditEvent.of(category, message)));
+                if (decision == AuditDecision.Persist) {
+                    audit = Optional.of(persister.start(RegAuditEvent.of(category, message)));
+                } else if (decision == AuditDecision.OnError) {
+                    audit = Optional.of(persister.create(RegAuditEvent.of(category, message)));
+                }
             } catch (Exception e) {
                 log.error(e.getMessage(), e);
             }
             T v = callable.get();
             try {
-                audit.ifPresent(persister::finish);
+                if (decision == AuditDecision.Persist) {
+                    audit.ifPresent(persister::finish);
+                    policy.persisted(category);
+                } else {
+                    policy.skipped(category);
+                }
             } catch (Exception e) {
                 log.error(e.getMessage(), e);
             }
@@ -148,6 +190,7 @@ public class AuditHandler {
         } catch (ValidationException e) {
             try {
                 audit.ifPresent((v) -> persister.cancel(v, e.getMessage()));
+                countEnd(category, audit);
             } catch (Exception ex) {
                 log.error(ex.getMessage(), ex);
             }
@@ -155,6 +198,7 @@ public class AuditHandler {
         } catch (RuntimeException e) {
             try {
                 audit.ifPresent((v) -> persister.error(v, e.getMessage()));
+                countEnd(category, audit);
             } catch (Exception ex) {
                 log.error(ex.getMessage(), ex);
             }
@@ -162,6 +206,7 @@ public class AuditHandler {
         } catch (Exception e) {
             try {
                 audit.ifPresent((v) -> persister.error(v, e.getMessage()));
+                countEnd(category, audit);
             } catch (Exception ex) {
                 log.error(ex.getMessage(), ex);
             }
@@ -169,65 +214,130 @@ public class AuditHandler {
         }
     }
     
+    /**
+     * The persister of the audit logs.
+     * <p>When AuditWriter is enabled ("extension.audit.mode" is async),
+     *  the logs are written behind by AuditWriter instead of the transaction per the start / end.
+     */
     @Singleton
     public static class AuditPersister {
         private final OrmRepository rep;
         private final PlatformTransactionManager txm;
+        private final Optional<AuditWriter> writer;
 
         public AuditPersister(
                 @Named(SystemRepository.Name) OrmRepository rep,
                 @Named(SystemRepository.Name) PlatformTransactionManager txm) {
+            this(rep, txm, Optional.empty());
+        }
+
+        @Inject
+        public AuditPersister(
+                @Named(SystemRepository.Name) OrmRepository rep,
+                @Named(SystemRepository.Name) PlatformTransactionManager txm,
+                Optional<AuditWriter> writer) {
             this.rep = rep;
             this.txm = txm;
+            this.writer = writer;
+        }
+
+        /** Create the log which is persisted at the end. (it is not saved) */
+        public AuditActor create(RegAuditActor p) {
+            return p.create(rep.dh().actor(), rep.dh().time().date());
         }
 
         public AuditActor start(RegAuditActor p) {
+            if (writer.isPresent()) {
+                AuditActor audit = create(p);
+                writer.get().start(audit, () -> audit.setId(null));
+                return audit;
+            }
             return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
                 return AuditActor.register(rep, p);
             });
         }
 
         public AuditActor finish(AuditActor audit) {
+            if (writer.isPresent()) {
+                return end(audit, ActionStatusType.Processed, null);
+            }
             return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
                 return audit.finish(rep);
             });
         }
 
         public AuditActor cancel(AuditActor audit, String errorReason) {
+            if (writer.isPresent()) {
+                return end(audit, ActionStatusType.Cancelled, errorReason);
+            }
             return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
                 return audit.cancel(rep, errorReason);
             });
         }
 
         public AuditActor error(AuditActor audit, String errorReason) {
+            if (writer.isPresent()) {
+                return end(audit, ActionStatusType.Error, errorReason);
+            }
             return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
                 return audit.error(rep, errorReason);
             });
         }
 
+        private AuditActor end(AuditActor audit, ActionStatusType statusType, String errorReason) {
+            LocalDateTime now = rep.dh().time().date();
+            writer.get().end(audit, () -> audit.end(statusType, errorReason, now));
+            return audit;
+        }
+
+        /** Create the log which is persisted at the end. (it is not saved) */
+        public AuditEvent create(RegAuditEvent p) {
+            return p.create(rep.dh().time().date());
+        }
+
         public AuditEvent start(RegAuditEvent p) {
+            if (writer.isPresent()) {
+                AuditEvent event = create(p);
+                writer.get().start(event, () -> event.setId(null));
+                return event;
+            }
             return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
                 return AuditEvent.register(rep, p);
             });
         }
 
         public AuditEvent finish(AuditEvent event) {
+            if (writer.isPresent()) {
+                return end(event, ActionStatusType.Processed, null);
+            }
             return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
                 return event.finish(rep);
             });
         }
 
         public AuditEvent cancel(AuditEvent event, String errorReason) {
+            if (writer.isPresent()) {
+                return end(event, ActionStatusType.Cancelled, errorReason);
+            }
             return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
                 return event.cancel(rep, errorReason);
             });
         }
 
         public AuditEvent error(AuditEvent event, String errorReason) {
+            if (writer.isPresent()) {
+                return end(event, ActionStatusType.Error, errorReason);
+            }
             return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
                 return event.error(rep, errorReason);
             });
         }
+
+        private AuditEvent end(AuditEvent event, ActionStatusType statusType, String errorReason) {
+            LocalDateTime now = rep.dh().time().date();
+            writer.get().end(event, () -> event.end(statusType, errorReason, now));
+            return event;
+        }
     }
 
 }
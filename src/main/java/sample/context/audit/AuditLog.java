@@ -0,0 +1,20 @@
+package sample.context.audit;
+
+import sample.context.Entity;
+
+/**
+ * The audit log whose message and error reason are indexed by AuditTerm.
+ */
+public interface AuditLog extends Entity {
+
+    Long getId();
+
+    String getMessage();
+
+    String getErrorReason();
+
+    void setMessageHash(String messageHash);
+
+    void setErrorReasonHash(String errorReasonHash);
+
+}
@@ -0,0 +1,165 @@
+package sample.context.audit;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+import io.micrometer.core.instrument.*;
+import io.micronaut.context.annotation.Value;
+import lombok.Getter;
+import sample.InvocationException;
+
+/**
+ * The persistence policy of the audit logs per the category.
+ * <p>"extension.audit.policy" is the policy of the category which is not listed in "extension.audit.policies".
+ * "extension.audit.policies" is the list of "category=policy". (ex. "read=sampled:100, report=log")
+ * <ul>
+ * <li>always: The log is persisted at the start and the end.
+ * <li>error: The log is persisted only when the call is cancelled or fails.
+ * <li>sampled:N: The log of every N calls is persisted. (the other calls are same as error)
+ * <li>log: The log is written only to Logger.
+ * </ul>
+ * The policy is decided on the memory, and the decisions are counted per the category.
+ * ("audit.persisted" / "audit.skipped")
+ */
+@Singleton
+public class AuditPolicy {
+    public static final String KeyPolicy = "extension.audit.policy";
+    public static final String KeyPolicyEL = "${" + KeyPolicy + ":always}";
+    public static final String KeyPolicies = "extension.audit.policies";
+    public static final String KeyPoliciesEL = "${" + KeyPolicies + ":}";
+
+    public static final String MetricPersisted = "audit.persisted";
+    public static final String MetricSkipped = "audit.skipped";
+
+    private final CategoryPolicy defaultPolicy;
+    private final Map<String, CategoryPolicy> policies = new HashMap<>();
+    private final ConcurrentMap<String, CategoryPolicy> categories = new ConcurrentHashMap<>();
+    private final Optional<MeterRegistry> metrics;
+
+    public AuditPolicy(
+            @Value(KeyPolicyEL) String policy,
+            @Value(KeyPoliciesEL) String policies,
+            Optional<MeterRegistry> metrics) {
+        this.defaultPolicy = CategoryPolicy.parse(policy);
+        for (String entry : policies.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            String[] kv = entry.split("=", 2);
+            if (kv.length != 2) {
+                throw new InvocationException("The audit policy must be \"category=policy\". [" + entry + "]");
+            }
+            this.policies.put(kv[0].trim(), CategoryPolicy.parse(kv[1]));
+        }
+        this.metrics = metrics;
+    }
+
+    /** Decide the persistence of the log at the start of the call. */
+    public AuditDecision decide(String category) {
+        return categories.computeIfAbsent(category, this::create).decide();
+    }
+
+    private CategoryPolicy create(String category) {
+        CategoryPolicy base = policies.getOrDefault(category, defaultPolicy);
+        return new CategoryPolicy(base.getType(), base.getRate(), category, metrics);
+    }
+
+    /** Count that the log of the category is persisted. */
+    public void persisted(String category) {
+        categories.computeIfAbsent(category, this::create).persisted();
+    }
+
+    /** Count that the log of the category is not persisted. */
+    public void skipped(String category) {
+        categories.computeIfAbsent(category, this::create).skipped();
+    }
+
+    /** The policy which always persists the log. */
+    public static AuditPolicy always() {
+        return new AuditPolicy("always", "", Optional.empty());
+    }
+
+    public static enum AuditPolicyType {
+        Always,
+        Error,
+        Sampled,
+        Log;
+    }
+
+    /** The persistence of the log which is decided at the start of the call. */
+    public static enum AuditDecision {
+        /** The log is persisted at the start and the end. */
+        Persist,
+        /** The log is persisted at the end only when the call is cancelled or fails. */
+        OnError,
+        /** The log is not persisted. */
+        Skip;
+    }
+
+    @Getter
+    private static class CategoryPolicy {
+        private final AuditPolicyType type;
+        private final long rate;
+        private final AtomicLong calls = new AtomicLong();
+        private final Optional<Counter> persisted;
+        private final Optional<Counter> skipped;
+
+        CategoryPolicy(AuditPolicyType type, long rate, String category, Optional<MeterRegistry> metrics) {
+            this.type = type;
+            this.rate = rate;
+            this.persisted = metrics.map(registry -> Counter.builder(MetricPersisted)
+                    .description("The number of the audit logs which are persisted.")
+                    .tag("category", category)
+                    .register(registry));
+            this.skipped = metrics.map(registry -> Counter.builder(MetricSkipped)
+                    .description("The number of the audit logs which are not persisted.")
+                    .tag("category", category)
+                    .register(registry));
+        }
+
+        AuditDecision decide() {
+            if (type == AuditPolicyType.Always) {
+                return AuditDecision.Persist;
+            } else if (type == AuditPolicyType.Error) {
+                return AuditDecision.OnError;
+            } else if (type == AuditPolicyType.Sampled) {
+                return calls.getAndIncrement() % rate == 0 ? AuditDecision.Persist : AuditDecision.OnError;
+            } else {
+                return AuditDecision.Skip;
+            }
+        }
+
+        void persisted() {
+            persisted.ifPresent(Counter::increment);
+        }
+
+        void skipped() {
+            skipped.ifPresent(Counter::increment);
+        }
+
+        static CategoryPolicy parse(String policy) {
+            String[] v = policy.trim().split(":", 2);
+            String type = v[0].trim();
+            if ("always".equals(type)) {
+                return new CategoryPolicy(AuditPolicyType.Always, 1, "", Optional.empty());
+            } else if ("error".equals(type)) {
+                return new CategoryPolicy(AuditPolicyType.Error, 1, "", Optional.empty());
+            } else if ("sampled".equals(type) && v.length == 2) {
+                try {
+                    long rate = Long.parseLong(v[1].trim());
+                    if (0 < rate) {
+                        return new CategoryPolicy(AuditPolicyType.Sampled, rate, "", Optional.empty());
+                    }
+                } catch (NumberFormatException e) {
+                }
+            } else if ("log".equals(type)) {
+                return new CategoryPolicy(AuditPolicyType.Log, 1, "", Optional.empty());
+            }
+            throw new InvocationException("Unknown audit policy. [" + policy + "]");
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+package sample.context.audit;
+
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import javax.persistence.*;
+import javax.persistence.criteria.*;
+import javax.validation.constraints.*;
+import javax.xml.bind.DatatypeConverter;
+
+import org.hibernate.criterion.MatchMode;
+
+import lombok.*;
+import sample.context.orm.*;
+
+/**
+ * The term of the inverted index of the audit log. (n-gram of the distinct message and error reason)
+ * <p>The text is lower-cased and split into the grams of GramSize chars. (the gram with the space is ignored)
+ * The grams are written once per the distinct text with its hash,
+ *  and the log refers to them by the hash. (AuditLog#getMessageHash / AuditLog#getErrorReasonHash)
+ * The keyword search narrows the logs to the ones whose text has all the grams of the keyword,
+ *  and the "like" condition checks the candidates. (the keyword shorter than GramSize is only "like")
+ * low: The grams of the same new text may be written twice by the concurrent transactions, but the search ignores it.
+ *  The grams of the texts which only the purged logs refer to are deleted by #purge,
+ *  and the log which is written during it is indexed again by #repair.
+ */
+@Entity
+@Table(indexes = { @Index(columnList = "targetType,gram"), @Index(columnList = "targetType,textHash") })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+public class AuditTerm extends OrmActiveRecord<AuditTerm> {
+    private static final long serialVersionUID = 1l;
+    public static final int GramSize = 2;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_term_seq")
+    @SequenceGenerator(name = "audit_term_seq", sequenceName = "audit_term_seq", allocationSize = IdAllocationSize)
+    private Long id;
+    /** The entity name of the log */
+    @NotNull
+    @Size(max = 30)
+    private String targetType;
+    /** The hash of the text (SHA-256) */
+    @NotNull
+    @Size(max = 64)
+    private String textHash;
+    @NotNull
+    @Size(max = GramSize)
+    private String gram;
+
+    /**
+     * Set the hashes of the text to the log, and write the grams of the text which is not indexed yet.
+     * <p>Call it before the log is inserted.
+     */
+    public static void index(final OrmRepository rep, final AuditLog log) {
+        String targetType = log.getClass().getSimpleName();
+        log.setMessageHash(indexText(rep, targetType, log.getMessage()));
+        log.setErrorReasonHash(indexText(rep, targetType, log.getErrorReason()));
+    }
+
+    /**
+     * Index the error reason of the log which was inserted. (the message was indexed at the start)
+     * <p>Call it before the log is updated at the end.
+     */
+    public static void indexErrorReason(final OrmRepository rep, final AuditLog log) {
+        if (log.getErrorReason() != null) {
+            log.setErrorReasonHash(indexText(rep, log.getClass().getSimpleName(), log.getErrorReason()));
+        }
+    }
+
+    private static String indexText(final OrmRepository rep, String targetType, String text) {
+        Set<String> grams = grams(text);
+        if (grams.isEmpty()) {
+            return null;
+        }
+        String textHash = hash(text);
+        List<Long> indexed = rep.tmpl().find(
+                "select count(t) from AuditTerm t where t.targetType=?1 and t.textHash=?2", targetType, textHash);
+        if (indexed.get(0) == 0L) {
+            grams.forEach(gram -> rep.save(new AuditTerm(null, targetType, textHash, gram)));
+        }
+        return textHash;
+    }
+
+    /** Return the distinct grams of the text. */
+    public static Set<String> grams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (text == null) {
+            return grams;
+        }
+        String v = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i + GramSize <= v.length(); i++) {
+            String gram = v.substring(i, i + GramSize);
+            if (gram.chars().noneMatch(Character::isWhitespace)) {
+                grams.add(gram);
+            }
+        }
+        return grams;
+    }
+
+    private static String hash(String text) {
+        try {
+            return DatatypeConverter.printHexBinary(
+                    MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Add the keyword condition of the fields. (the keyword is ignored at the time of null)
+     * <p>The logs are narrowed by the subquery of the terms on the hash of the field ("field" + "Hash")
+     *  before the "like" condition.
+     */
+    public static <T> OrmCriteria<T> match(final OrmCriteria<T> criteria, String[] fields, String keyword) {
+        Set<String> grams = grams(keyword);
+        if (!grams.isEmpty()) {
+            criteria.or(Arrays.stream(fields)
+                    .map(field -> criteria.root().get(field + "Hash").in(textHashes(criteria, grams)))
+                    .toArray(Predicate[]::new));
+        }
+        return criteria.like(fields, keyword, MatchMode.ANYWHERE);
+    }
+
+    /** The subquery of the hashes of the texts which have all the grams. */
+    private static Subquery<String> textHashes(final OrmCriteria<?> criteria, final Set<String> grams) {
+        Subquery<String> terms = criteria.subquery(String.class);
+        Root<AuditTerm> term = terms.from(AuditTerm.class);
+        return terms.select(term.get("textHash"))
+                .where(criteria.builder().equal(term.get("targetType"), criteria.entityClass().getSimpleName()),
+                        term.get("gram").in(grams))
+                .groupBy(term.get("textHash"))
+                .having(criteria.builder().equal(
+                        criteria.builder().countDistinct(term.get("gram")), (long) grams.size()));
+    }
+
+    /**
+     * Delete the terms of the texts which only the logs started in [from, to) refer to.
+     * <p>Call it before the logs are deleted.
+     */
+    public static int purge(final OrmRepository rep, Class<? extends AuditLog> type,
+            LocalDateTime from, LocalDateTime to) {
+        String targetType = type.getSimpleName();
+        String inRange = " a where ?2 <= a.startDate and a.startDate < ?3";
+        String outRange = " and (a.startDate < ?2 or ?3 <= a.startDate)";
+        return rep.tmpl().execute("delete from AuditTerm t where t.targetType=?1"
+                + " and (t.textHash in (select a.messageHash from " + targetType + inRange + ")"
+                + " or t.textHash in (select a.errorReasonHash from " + targetType + inRange + "))"
+                + " and not exists (select a.id from " + targetType + " a where a.messageHash=t.textHash"
+                + outRange + ")"
+                + " and not exists (select a.id from " + targetType + " a where a.errorReasonHash=t.textHash"
+                + outRange + ")",
+                targetType, from, to);
+    }
+
+    /**
+     * Write the grams again for the logs started since the date whose texts have no terms.
+     * <p>The log which was written during #purge may refer to the text whose terms were deleted by it.
+     * @return the number of the logs which were indexed again
+     */
+    public static int repair(final OrmRepository rep, Class<? extends AuditLog> type, LocalDateTime from) {
+        String targetType = type.getSimpleName();
+        List<AuditLog> logs = rep.tmpl().find("from " + targetType + " a where ?1 <= a.startDate and ("
+                + "(a.messageHash is not null and not exists (select t.id from AuditTerm t"
+                + " where t.targetType=?2 and t.textHash=a.messageHash))"
+                + " or (a.errorReasonHash is not null and not exists (select t.id from AuditTerm t"
+                + " where t.targetType=?2 and t.textHash=a.errorReasonHash)))",
+                from, targetType);
+        logs.forEach(log -> index(rep, log));
+        return logs.size();
+    }
+
+}
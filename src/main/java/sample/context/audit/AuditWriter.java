@@ -0,0 +1,255 @@
+package sample.context.audit;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PreDestroy;
+import javax.inject.*;
+
+import org.hibernate.Session;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.Timer;
+import io.micronaut.context.annotation.*;
+import lombok.extern.slf4j.Slf4j;
+import sample.context.orm.*;
+
+/**
+ * The write-behind writer of the audit logs. ("extension.audit.mode" is async)
+ * <p>The start / end of the audit log is put into the bounded queue ("extension.audit.queue-size"),
+ *  and the writer thread drains it in the transaction per batch of "extension.audit.batch-size".
+ * When the start and the end of the log are in the same batch, the log is inserted in its final status.
+ * When the queue is full, the caller waits for the writer. (backpressure)
+ * The queue is drained on the shutdown, so the logs reach their final status unless the process is killed.
+ * After the shutdown, the caller drains the queue by itself, so the end is never written before its start.
+ * low: The failed batch is written again one by one, and the log which still fails is only logged.
+ */
+@Singleton
+@Requires(property = AuditWriter.KeyMode, value = "async")
+@Slf4j
+public class AuditWriter {
+    /** sync / async */
+    public static final String KeyMode = "extension.audit.mode";
+    public static final String KeyQueueSize = "extension.audit.queue-size";
+    public static final String KeyQueueSizeEL = "${" + KeyQueueSize + ":10000}";
+    public static final String KeyBatchSize = "extension.audit.batch-size";
+    public static final String KeyBatchSizeEL = "${" + KeyBatchSize + ":50}";
+    public static final String KeyInterval = "extension.audit.interval";
+    /** The interval of the polling when the queue is empty */
+    public static final String KeyIntervalEL = "${" + KeyInterval + ":10ms}";
+
+    public static final String MetricQueueSize = "audit.queue.size";
+    public static final String MetricQueueFull = "audit.queue.full";
+    public static final String MetricQueueWait = "audit.queue.wait";
+    public static final String MetricWrite = "audit.write";
+    public static final String MetricWriteError = "audit.write.error";
+
+    private static final long WaitNanos = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long CloseTimeoutMillis = 30000;
+
+    private final OrmRepository rep;
+    private final PlatformTransactionManager txm;
+    private final int batchSize;
+    private final long intervalNanos;
+    private final BlockingQueue<AuditRecord> queue;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean closed = false;
+    private final Optional<Counter> fullCounter;
+    private final Optional<Timer> waitTimer;
+    private final Optional<Timer> writeTimer;
+    private final Optional<Counter> errorCounter;
+
+    public AuditWriter(
+            @Named(SystemRepository.Name) OrmRepository rep,
+            @Named(SystemRepository.Name) PlatformTransactionManager txm,
+            @Value(KeyQueueSizeEL) int queueSize,
+            @Value(KeyBatchSizeEL) int batchSize,
+            @Value(KeyIntervalEL) Duration interval,
+            Optional<MeterRegistry> metrics) {
+        this.rep = rep;
+        this.txm = txm;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.intervalNanos = interval.toNanos();
+        metrics.ifPresent(registry -> Gauge.builder(MetricQueueSize, queue, Queue::size)
+                .description("The number of the audit logs which wait for the write.")
+                .register(registry));
+        this.fullCounter = metrics.map(registry -> Counter.builder(MetricQueueFull)
+                .description("The number of the audit logs which waited for the space of the queue.")
+                .register(registry));
+        this.waitTimer = metrics.map(registry -> Timer.builder(MetricQueueWait)
+                .description("The wait time for the space of the queue.")
+                .register(registry));
+        this.writeTimer = metrics.map(registry -> Timer.builder(MetricWrite)
+                .description("The write time of the batch of the audit logs.")
+                .register(registry));
+        this.errorCounter = metrics.map(registry -> Counter.builder(MetricWriteError)
+                .description("The number of the audit logs which failed to be written.")
+                .register(registry));
+        this.thread = new Thread(this::run, "audit-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Write the start of the audit log.
+     * @param reset clear the identifier which was assigned by the failed batch
+     */
+    public void start(final AuditLog entity, final Runnable reset) {
+        offer(new AuditRecord(entity, Optional.of(reset), Optional.empty()));
+    }
+
+    /**
+     * Write the end of the audit log.
+     * @param change change the entity to the end status (it is called on the writer thread)
+     */
+    public void end(final AuditLog entity, final Runnable change) {
+        offer(new AuditRecord(entity, Optional.empty(), Optional.of(change)));
+    }
+
+    private void offer(final AuditRecord record) {
+        if (!queue.offer(record)) {
+            fullCounter.ifPresent(Counter::increment);
+            long start = System.nanoTime();
+            try {
+                while (!queue.offer(record, WaitNanos, TimeUnit.NANOSECONDS)) {
+                    if (closed) {
+                        drain();
+                    } else {
+                        LockSupport.unpark(thread);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                writeAfterQueued(record);
+                return;
+            } finally {
+                waitTimer.ifPresent(timer -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+            }
+        }
+        if (closed) {
+            drain(); // the writer thread may have stopped
+        } else if (batchSize <= queue.size()) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /** Write the record after the queued logs. (the start of the record may be queued) */
+    private synchronized void writeAfterQueued(final AuditRecord record) {
+        drain();
+        write(Collections.singletonList(record));
+    }
+
+    private void run() {
+        while (running) {
+            if (!drain()) {
+                LockSupport.parkNanos(this, intervalNanos);
+            }
+        }
+    }
+
+    /**
+     * Write the queued logs. (false when the queue is empty)
+     * <p>It is serialized, so the start polled by a drain is written before the end polled by the other.
+     */
+    private synchronized boolean drain() {
+        List<AuditRecord> batch = new ArrayList<>(batchSize);
+        AuditRecord record;
+        while ((record = queue.poll()) != null) {
+            batch.add(record);
+            if (batchSize <= batch.size()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+        if (batch.isEmpty()) {
+            return false;
+        }
+        write(batch);
+        return true;
+    }
+
+    private void write(final List<AuditRecord> batch) {
+        long start = System.nanoTime();
+        try {
+            TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
+                apply(batch);
+                rep.flushAndClear();
+            });
+        } catch (RuntimeException e) {
+            log.warn("The batch of the audit logs failed, so the logs are written one by one. [{}]", e.getMessage());
+            batch.forEach(record -> record.reset.ifPresent(Runnable::run));
+            batch.forEach(record -> {
+                try {
+                    TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
+                        apply(Collections.singletonList(record));
+                        rep.flushAndClear();
+                    });
+                } catch (RuntimeException ex) {
+                    record.reset.ifPresent(Runnable::run);
+                    errorCounter.ifPresent(Counter::increment);
+                    log.error(ex.getMessage(), ex);
+                }
+            });
+        }
+        writeTimer.ifPresent(timer -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    /** Insert the started logs in their latest status and update the other ended logs. */
+    private void apply(final List<AuditRecord> batch) {
+        Set<AuditLog> started = Collections.newSetFromMap(new IdentityHashMap<>());
+        batch.stream().filter(AuditRecord::isStart).forEach(record -> started.add(record.entity));
+        batch.forEach(record -> record.change.ifPresent(Runnable::run));
+        Session session = rep.em().unwrap(Session.class);
+        for (AuditRecord record : batch) {
+            if (record.isStart()) {
+                AuditTerm.index(rep, record.entity);
+                rep.save(record.entity);
+            } else if (!started.contains(record.entity)) {
+                if (record.entity.getId() == null) {
+                    AuditTerm.index(rep, record.entity);
+                    rep.save(record.entity); // the start was not written
+                } else {
+                    AuditTerm.indexErrorReason(rep, record.entity);
+                    session.update(record.entity);
+                }
+            }
+        }
+    }
+
+    /** Write all the queued logs and stop the writer thread. */
+    @PreDestroy
+    public void close() {
+        closed = true;
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(CloseTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+    }
+
+    private static class AuditRecord {
+        private final AuditLog entity;
+        private final Optional<Runnable> reset;
+        private final Optional<Runnable> change;
+
+        AuditRecord(AuditLog entity, Optional<Runnable> reset, Optional<Runnable> change) {
+            this.entity = entity;
+            this.reset = reset;
+            this.change = change;
+        }
+
+        boolean isStart() {
+            return reset.isPresent();
+        }
+    }
+
+}
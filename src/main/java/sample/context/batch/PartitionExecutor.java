@@ -0,0 +1,152 @@
+package sample.context.batch;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Singleton;
+
+import io.micronaut.context.annotation.Value;
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+import sample.InvocationException;
+import sample.context.actor.*;
+
+/**
+ * The executor which processes the partitions of the batch in parallel.
+ * <p>The partitions are processed on the bounded worker pool of "extension.batch.parallelism",
+ *  and the worker binds the actor of the caller.
+ * The partitions must not share the updated data (ex. partition by account)
+ *  so that the result does not depend on the order of the partitions.
+ * When the parallelism is 1, the partitions are processed in order on the caller thread.
+ */
+@Singleton
+@Slf4j
+public class PartitionExecutor {
+    public static final String KeyParallelism = "extension.batch.parallelism";
+    public static final String KeyParallelismEL = "${" + KeyParallelism + ":1}";
+
+    private final ActorSession session;
+    private final Optional<ExecutorService> executor;
+
+    public PartitionExecutor(ActorSession session, @Value(KeyParallelismEL) int parallelism) {
+        this.session = session;
+        this.executor = parallelism <= 1 ? Optional.empty()
+                : Optional.of(Executors.newFixedThreadPool(parallelism, new PartitionThreadFactory()));
+    }
+
+    /**
+     * Process the partitions and return the result per partition in the order of the partitions.
+     * <p>When the task throws an exception, all the items of the partition are counted as error.
+     * (The task is expected to process the partition in a transaction)
+     */
+    public <K, T> List<PartitionResult<K>> execute(Map<K, List<T>> partitions, final PartitionTask<K, T> task) {
+        if (!executor.isPresent()) {
+            return partitions.entrySet().stream()
+                    .map(entry -> run(entry.getKey(), entry.getValue(), task))
+                    .collect(Collectors.toList());
+        }
+        Actor actor = session.actor();
+        List<Future<PartitionResult<K>>> futures = partitions.entrySet().stream()
+                .map(entry -> executor.get().submit(() -> {
+                    session.bind(actor);
+                    try {
+                        return run(entry.getKey(), entry.getValue(), task);
+                    } finally {
+                        session.unbind();
+                    }
+                }))
+                .collect(Collectors.toList());
+        List<PartitionResult<K>> results = new ArrayList<>(futures.size());
+        for (Future<PartitionResult<K>> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new InvocationException("error.Exception", e);
+            } catch (ExecutionException e) {
+                throw new InvocationException("error.Exception", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private <K, T> PartitionResult<K> run(K key, List<T> items, final PartitionTask<K, T> task) {
+        PartitionResult<K> result = new PartitionResult<>(key, items.size());
+        long start = System.currentTimeMillis();
+        try {
+            task.run(key, items, result);
+        } catch (RuntimeException e) {
+            log.error("[" + key + "] Failure partition.", e);
+            result.failAll();
+        }
+        result.setTime(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.ifPresent(ExecutorService::shutdown);
+    }
+
+    /** The processing of a partition. */
+    @FunctionalInterface
+    public static interface PartitionTask<K, T> {
+        /** Process the items of the partition and count the success / error of each item in the result. */
+        void run(K key, List<T> items, PartitionResult<K> result);
+    }
+
+    /** The result of a partition. */
+    @Data
+    @NoArgsConstructor
+    public static class PartitionResult<K> {
+        private K key;
+        private int size;
+        private int success;
+        private int error;
+        /** The processing time (msec) */
+        private long time;
+
+        public PartitionResult(K key, int size) {
+            this.key = key;
+            this.size = size;
+        }
+
+        public void success() {
+            success++;
+        }
+
+        public void error() {
+            error++;
+        }
+
+        /** The items which succeeded are also rolled back with the partition, so all of them are error. */
+        public void failAll() {
+            success = 0;
+            error = size;
+        }
+
+        public static <K> int success(List<PartitionResult<K>> results) {
+            return results.stream().mapToInt(PartitionResult::getSuccess).sum();
+        }
+
+        public static <K> int error(List<PartitionResult<K>> results) {
+            return results.stream().mapToInt(PartitionResult::getError).sum();
+        }
+    }
+
+    private static class PartitionThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "partition-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,4 @@
+/**
+ * An infrastructure layer component of batch processing.
+ */
+package sample.context.batch;
\ No newline at end of file
@@ -0,0 +1,293 @@
+package sample.context.cache;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+import javax.inject.Singleton;
+
+import org.springframework.transaction.support.*;
+
+import io.micrometer.core.instrument.*;
+import io.micronaut.context.annotation.Value;
+
+/**
+ * The memory cache of the regions which is consistent with the transaction.
+ * <p>The value is changed by the delta which is applied when the transaction is committed,
+ *  and the value which was loaded during the change of the other transaction is not cached.
+ * (the change of the key is counted by the stamp, and the stale load is discarded)
+ * <p>When "extension.cache.enabled" is false, the loader is always called.
+ * low: The region is bounded by "extension.cache.max-size" and "extension.cache.ttl",
+ *  the change which does not pass this component (ex. SQL tool) is reflected after TTL.
+ */
+@Singleton
+public class CacheHandler {
+    public static final String KeyEnabled = "extension.cache.enabled";
+    public static final String KeyEnabledEL = "${" + KeyEnabled + ":false}";
+    public static final String KeyMaxSize = "extension.cache.max-size";
+    public static final String KeyMaxSizeEL = "${" + KeyMaxSize + ":10000}";
+    public static final String KeyTtl = "extension.cache.ttl";
+    public static final String KeyTtlEL = "${" + KeyTtl + ":10m}";
+
+    public static final String MetricGets = "cache.gets";
+    public static final String MetricSize = "cache.size";
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final Duration ttl;
+    private final Optional<MeterRegistry> metrics;
+    private final ConcurrentMap<String, CacheRegion> regions = new ConcurrentHashMap<>();
+
+    public CacheHandler(
+            @Value(KeyEnabledEL) boolean enabled,
+            @Value(KeyMaxSizeEL) int maxSize,
+            @Value(KeyTtlEL) Duration ttl,
+            Optional<MeterRegistry> metrics) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.metrics = metrics;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Return the cached value, or load and cache it.
+     * <p>When the current transaction changes the key, the loader is called because the cache does not
+     *  contain the change of the transaction yet.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V load(String region, Object key, final Supplier<V> loader) {
+        if (!enabled || changes().map(c -> c.contains(region, key)).orElse(false)) {
+            return loader.get();
+        }
+        CacheRegion r = region(region);
+        Optional<Object> cached = r.get(key);
+        if (cached.isPresent()) {
+            r.hit();
+            return (V) cached.get();
+        }
+        r.miss();
+        long stamp = r.stamp(key);
+        V v = loader.get();
+        if (v != null) {
+            r.putIfUnchanged(key, v, stamp);
+        }
+        return v;
+    }
+
+    /**
+     * Change the cached value with the delta.
+     * <p>In the transaction, the delta is applied when it is committed. (the value is evicted on the rollback)
+     * Out of the transaction, the value is evicted.
+     */
+    public <V> void change(String region, Object key, final UnaryOperator<V> delta) {
+        if (!enabled) {
+            return;
+        }
+        Optional<TxChanges> changes = changes();
+        if (!changes.isPresent() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TxChanges created = new TxChanges();
+            TransactionSynchronizationManager.registerSynchronization(created);
+            changes = Optional.of(created);
+        }
+        if (changes.isPresent()) {
+            changes.get().add(region(region), key, delta);
+        } else {
+            region(region).apply(key, null);
+        }
+    }
+
+    /** Evict the cached value. */
+    public void evict(String region, Object key) {
+        if (enabled) {
+            region(region).apply(key, null);
+        }
+    }
+
+    /** Evict all the cached values of the region. */
+    public void evictAll(String region) {
+        if (enabled) {
+            region(region).clear();
+        }
+    }
+
+    private CacheRegion region(String name) {
+        return regions.computeIfAbsent(name, k -> new CacheRegion(k, maxSize, ttl, metrics));
+    }
+
+    private Optional<TxChanges> changes() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return Optional.empty();
+        }
+        return TransactionSynchronizationManager.getSynchronizations().stream()
+                .filter(s -> s instanceof TxChanges && ((TxChanges) s).owner() == this)
+                .map(s -> (TxChanges) s)
+                .findFirst();
+    }
+
+    /** The changes of the transaction which are applied on the completion. */
+    private class TxChanges extends TransactionSynchronizationAdapter {
+        private final Map<CacheRegion, Map<Object, List<UnaryOperator<Object>>>> changes = new LinkedHashMap<>();
+
+        CacheHandler owner() {
+            return CacheHandler.this;
+        }
+
+        boolean contains(String region, Object key) {
+            return changes.entrySet().stream()
+                    .anyMatch(e -> e.getKey().name.equals(region) && e.getValue().containsKey(key));
+        }
+
+        @SuppressWarnings("unchecked")
+        <V> void add(CacheRegion region, Object key, UnaryOperator<V> delta) {
+            Map<Object, List<UnaryOperator<Object>>> keyMap = changes.computeIfAbsent(region,
+                    k -> new LinkedHashMap<>());
+            if (!keyMap.containsKey(key)) {
+                region.begin(key);
+            }
+            keyMap.computeIfAbsent(key, k -> new ArrayList<>()).add((UnaryOperator<Object>) delta);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            boolean committed = status == TransactionSynchronization.STATUS_COMMITTED;
+            changes.forEach((region, keyMap) -> keyMap.forEach((key, deltas) -> {
+                region.complete(key, committed ? deltas : null);
+            }));
+        }
+    }
+
+    /**
+     * The region of the cache.
+     * <p>The stamp of the key is changed in the same atomic compute as the value,
+     *  so the load which overlaps the change is not cached.
+     * The stamp of the key includes the stamp of the region which is changed by #clear.
+     */
+    private static class CacheRegion {
+        private static final int Stripes = 64;
+        private final String name;
+        private final int maxSize;
+        private final long ttlNanos;
+        private final ConcurrentMap<Object, CacheEntry> entries = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Object, Integer> pending = new ConcurrentHashMap<>();
+        private final AtomicLongArray stamps = new AtomicLongArray(Stripes);
+        private final AtomicLong regionStamp = new AtomicLong();
+        private final Optional<Counter> hits;
+        private final Optional<Counter> misses;
+
+        CacheRegion(String name, int maxSize, Duration ttl, Optional<MeterRegistry> metrics) {
+            this.name = name;
+            this.maxSize = maxSize;
+            this.ttlNanos = ttl.toNanos();
+            this.hits = metrics.map(registry -> Counter.builder(MetricGets)
+                    .tag("cache", name).tag("result", "hit").register(registry));
+            this.misses = metrics.map(registry -> Counter.builder(MetricGets)
+                    .tag("cache", name).tag("result", "miss").register(registry));
+            metrics.ifPresent(registry -> Gauge.builder(MetricSize, entries, Map::size)
+                    .tag("cache", name).register(registry));
+        }
+
+        Optional<Object> get(Object key) {
+            CacheEntry entry = entries.get(key);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            if (entry.expired(ttlNanos)) {
+                entries.remove(key, entry);
+                return Optional.empty();
+            }
+            return Optional.of(entry.value);
+        }
+
+        long stamp(Object key) {
+            return stamps.get(stripe(key)) + regionStamp.get();
+        }
+
+        void putIfUnchanged(Object key, Object value, long stamp) {
+            entries.compute(key, (k, current) -> {
+                boolean unchanged = !pending.containsKey(key) && stamp(key) == stamp;
+                return unchanged ? new CacheEntry(value) : current;
+            });
+            if (maxSize < entries.size()) {
+                shrink();
+            }
+        }
+
+        void begin(Object key) {
+            pending.merge(key, 1, Integer::sum);
+        }
+
+        /** Apply the deltas of the transaction and end the change of the key. */
+        void complete(Object key, List<UnaryOperator<Object>> deltas) {
+            apply(key, deltas);
+            pending.computeIfPresent(key, (k, count) -> count <= 1 ? null : count - 1);
+        }
+
+        /** Apply the deltas to the cached value, or evict it when the deltas are null. */
+        void apply(Object key, List<UnaryOperator<Object>> deltas) {
+            entries.compute(key, (k, current) -> {
+                stamps.incrementAndGet(stripe(key));
+                if (current == null || deltas == null || current.expired(ttlNanos)) {
+                    return null;
+                }
+                Object v = current.value;
+                for (UnaryOperator<Object> delta : deltas) {
+                    v = delta.apply(v);
+                }
+                return new CacheEntry(v, current.createNanos);
+            });
+        }
+
+        void clear() {
+            regionStamp.incrementAndGet();
+            entries.keySet().forEach(key -> apply(key, null));
+        }
+
+        /** Remove the expired entries, and remove the entries in order of the iteration when it is still full. */
+        private void shrink() {
+            entries.entrySet().removeIf(e -> e.getValue().expired(ttlNanos));
+            Iterator<Object> keys = entries.keySet().iterator();
+            while (maxSize < entries.size() && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+
+        private int stripe(Object key) {
+            int h = key.hashCode();
+            return (h ^ (h >>> 16)) & (Stripes - 1);
+        }
+
+        void hit() {
+            hits.ifPresent(Counter::increment);
+        }
+
+        void miss() {
+            misses.ifPresent(Counter::increment);
+        }
+    }
+
+    private static class CacheEntry {
+        private final Object value;
+        private final long createNanos;
+
+        CacheEntry(Object value) {
+            this(value, System.nanoTime());
+        }
+
+        CacheEntry(Object value, long createNanos) {
+            this.value = value;
+            this.createNanos = createNanos;
+        }
+
+        boolean expired(long ttlNanos) {
+            return ttlNanos < System.nanoTime() - createNanos;
+        }
+    }
+
+}
@@ -0,0 +1,4 @@
+/**
+ * An infrastructure layer component of cache.
+ */
+package sample.context.cache;
\ No newline at end of file
@@ -0,0 +1,309 @@
+package sample.context.lock;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+import javax.inject.*;
+import javax.persistence.PersistenceException;
+
+import org.slf4j.*;
+import org.springframework.dao.DataAccessException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+
+import io.micronaut.context.annotation.*;
+import io.micronaut.core.util.StringUtils;
+import io.micronaut.scheduling.annotation.Scheduled;
+import sample.InvocationException;
+import sample.context.lock.IdLockEngine.CountingLockEngine;
+import sample.context.lock.IdLockHandler.LockType;
+import sample.context.orm.*;
+
+/**
+ * The lock table which shares the ID lock between the nodes through the system schema.
+ * <p>The threads in the node are serialized by the memory lock first,
+ *  and the first holder of the thread acquires the lease of IdLockLease.
+ * The lease is extended by the heartbeat while it is held,
+ *  and the lease which the crashed node left expires after "extension.lock.db.lease".
+ * <p>The expiry of the lease is tracked per holder. The lease which expired without the extension
+ *  or was removed from the lock table is lost, and its holder fails on the unlock.
+ * low: The acquisition polls the lock table, so it is suitable for the coarse-grained lock such as the account.
+ */
+@Singleton
+@Requires(property = IdLockEngine.KeyMode, value = "db")
+public class DbLockEngine implements IdLockEngine {
+    public static final String KeyNode = "extension.lock.db.node";
+    public static final String KeyLease = "extension.lock.db.lease";
+    public static final String KeyLeaseEL = "${" + KeyLease + ":30s}";
+    public static final String KeyHeartbeat = "extension.lock.db.heartbeat";
+    public static final String KeyHeartbeatEL = "${" + KeyHeartbeat + ":10s}";
+    public static final String KeyPoll = "extension.lock.db.poll";
+    public static final String KeyPollEL = "${" + KeyPoll + ":50ms}";
+
+    private static final Logger logger = LoggerFactory.getLogger(DbLockEngine.class);
+
+    private final OrmRepository rep;
+    private final PlatformTransactionManager txm;
+    private final CountingLockEngine local;
+    private final String node;
+    private final Duration lease;
+    private final Duration poll;
+    private final ThreadLocal<Map<Serializable, Holder>> holds = ThreadLocal.withInitial(HashMap::new);
+    private final Set<Holder> leases = ConcurrentHashMap.newKeySet();
+
+    public DbLockEngine(
+            @Named(SystemRepository.Name) OrmRepository rep,
+            @Named(SystemRepository.Name) PlatformTransactionManager txm,
+            @Value(KeyStripesEL) int stripes,
+            @Value("${" + KeyNode + ":}") String node,
+            @Value(KeyLeaseEL) Duration lease,
+            @Value(KeyPollEL) Duration poll) {
+        this.rep = rep;
+        this.txm = txm;
+        this.local = new CountingLockEngine(stripes);
+        this.node = StringUtils.hasText(node) ? node : UUID.randomUUID().toString();
+        this.lease = lease;
+        this.poll = poll;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean tryLock(Serializable id, LockType lockType) {
+        if (!local.tryLock(id, lockType)) {
+            return false;
+        }
+        try {
+            return acquire(id, lockType, 0L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvocationException("error.Exception", e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean tryLock(Serializable id, LockType lockType, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!local.tryLock(id, lockType, timeout, unit)) {
+            return false;
+        }
+        return acquire(id, lockType, Math.max(0L, deadline - System.nanoTime()));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void lock(Serializable id, LockType lockType) {
+        local.lock(id, lockType);
+        try {
+            acquire(id, lockType, -1L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvocationException("error.Exception", e);
+        }
+    }
+
+    /**
+     * Acquire the lease when the thread does not hold it yet.
+     * <p>The memory lock is released when the lease cannot be acquired.
+     * @param timeoutNanos the negative value waits without the timeout.
+     */
+    private boolean acquire(Serializable id, LockType lockType, long timeoutNanos) throws InterruptedException {
+        Map<Serializable, Holder> held = holds.get();
+        Holder holder = held.get(id);
+        if (holder != null) {
+            holder.count++;
+            return true;
+        }
+        Optional<Holder> acquired = Optional.empty();
+        try {
+            acquired = lease(id, lockType, timeoutNanos);
+            acquired.ifPresent(v -> {
+                held.put(id, v);
+                leases.add(v);
+            });
+            return acquired.isPresent();
+        } finally {
+            if (!acquired.isPresent()) {
+                local.unlock(id);
+            }
+        }
+    }
+
+    private Optional<Holder> lease(Serializable id, LockType lockType, long timeoutNanos)
+            throws InterruptedException {
+        String lockId = lockId(id);
+        String owner = owner();
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (true) {
+            long start = System.nanoTime();
+            if (tryLease(lockId, owner, lockType)) {
+                return Optional.of(new Holder(lockId, owner, start + lease.toNanos()));
+            }
+            long remain = deadline - System.nanoTime();
+            if (0 <= timeoutNanos && remain <= 0) {
+                return Optional.empty();
+            }
+            long wait = poll.toNanos();
+            TimeUnit.NANOSECONDS.sleep(0 <= timeoutNanos ? Math.min(wait, remain) : wait);
+        }
+    }
+
+    private boolean tryLease(String lockId, String owner, LockType lockType) {
+        try {
+            return TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
+                return IdLockLease.acquire(rep, lockId, node, owner, lockType, lease);
+            });
+        } catch (PersistenceException | DataAccessException e) {
+            // The other node registered the same IdLockEntry at the same time, or the row lock timed out.
+            logger.debug("Retry the lease of the ID lock. [{}]", lockId, e);
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>IllegalMonitorStateException is thrown on the last unlock when the lease was lost while it was held.
+     *  (the lock is released in that case too)
+     */
+    @Override
+    public void unlock(Serializable id) {
+        Map<Serializable, Holder> held = holds.get();
+        Holder holder = held.get(id);
+        if (holder == null) {
+            throw new IllegalMonitorStateException("The lock is not held. [" + id + "]");
+        }
+        try {
+            if (1 < holder.count) {
+                holder.count--;
+                return;
+            }
+            held.remove(id);
+            leases.remove(holder);
+            release(holder.lockId, holder.owner);
+            if (holder.isLost(System.nanoTime())) {
+                throw new IllegalMonitorStateException(
+                        "The lease of the lock was lost while it was held. [" + id + "]");
+            }
+        } finally {
+            local.unlock(id);
+        }
+    }
+
+    /** The lease which failed to be released is removed when it expires. */
+    private void release(String lockId, String owner) {
+        try {
+            TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
+                IdLockLease.release(rep, lockId, owner);
+            });
+        } catch (PersistenceException | DataAccessException e) {
+            logger.warn("Failed to release the lease of the ID lock. [{}]", lockId, e);
+        }
+    }
+
+    /**
+     * Extend the leases which the node holds.
+     * <p>The holder whose lease is not in the lock table after the extension is lost.
+     * When the extension fails, the holder whose lease expired is lost.
+     */
+    @Scheduled(fixedDelay = KeyHeartbeatEL)
+    public void heartbeat() {
+        List<Holder> targets = new ArrayList<>(leases);
+        if (targets.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            Set<List<String>> extended = TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
+                IdLockLease.extend(rep, node, lease);
+                return IdLockLease.findByNode(rep, node).stream()
+                        .map(l -> Arrays.asList(l.getLockId(), l.getOwner()))
+                        .collect(Collectors.toSet());
+            });
+            for (Holder holder : targets) {
+                if (extended.contains(Arrays.asList(holder.lockId, holder.owner))) {
+                    holder.expireNanos = start + lease.toNanos();
+                } else if (leases.contains(holder)) { // it is not released during the extension
+                    lost(holder);
+                }
+            }
+        } catch (PersistenceException | DataAccessException e) {
+            logger.warn("Failed to extend the leases of the ID lock. [{}]", node, e);
+            long now = System.nanoTime();
+            targets.stream().filter(holder -> holder.isLost(now)).forEach(this::lost);
+        }
+    }
+
+    private void lost(Holder holder) {
+        if (!holder.lost) {
+            holder.lost = true;
+            logger.error("The lease of the ID lock was lost. [{}, {}]", holder.lockId, holder.owner);
+        }
+    }
+
+    /** Release the leases which the node holds on the shutdown. (the lease which failed to be released expires) */
+    @PreDestroy
+    public void close() {
+        if (leases.isEmpty()) {
+            return;
+        }
+        try {
+            TxTemplate.of(txm).propagation(Propagation.REQUIRES_NEW).tx(() -> {
+                return IdLockLease.releaseAll(rep, node);
+            });
+        } catch (PersistenceException | DataAccessException e) {
+            logger.warn("Failed to release the leases of the ID lock. [{}]", node, e);
+        }
+    }
+
+    private String lockId(Serializable id) {
+        return id.toString();
+    }
+
+    private String owner() {
+        return node + "/" + Thread.currentThread().getId();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int stripe(Serializable id) {
+        return local.stripe(id);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int stripes() {
+        return local.stripes();
+    }
+
+    public String node() {
+        return node;
+    }
+
+    /**
+     * The lease which the holder of the thread acquired.
+     * <p>The count is used only by the holder's thread, and the expiry is updated by the heartbeat.
+     */
+    private static class Holder {
+        private final String lockId;
+        private final String owner;
+        private int count = 1;
+        private volatile long expireNanos;
+        private volatile boolean lost;
+
+        Holder(String lockId, String owner, long expireNanos) {
+            this.lockId = lockId;
+            this.owner = owner;
+            this.expireNanos = expireNanos;
+        }
+
+        boolean isLost(long now) {
+            return lost || 0 <= now - expireNanos;
+        }
+    }
+
+}
@@ -0,0 +1,249 @@
+package sample.context.lock;
+
+import java.io.Serializable;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.inject.Singleton;
+
+import io.micronaut.context.annotation.*;
+import sample.context.lock.IdLockHandler.LockType;
+
+/**
+ * The lock table which IdLockHandler delegates the acquisition of the ID lock.
+ * <p>The implementation is selected by "extension.lock.mode".
+ * <ul>
+ * <li>counting: Hold a lock per ID and remove it on the last unlock. (default)
+ * <li>striped: Share a fixed number of locks hashed by ID.
+ * <li>db: Share the lock between the nodes through the lock table of the system schema. (DbLockEngine)
+ * </ul>
+ */
+public interface IdLockEngine {
+    String KeyMode = "extension.lock.mode";
+    String KeyStripes = "extension.lock.stripes";
+    String KeyStripesEL = "${" + KeyStripes + ":1024}";
+
+    /** Acquire the lock only when it is free at the time of the call. */
+    boolean tryLock(Serializable id, LockType lockType);
+
+    /** Acquire the lock when it becomes free within the timeout. */
+    boolean tryLock(Serializable id, LockType lockType, long timeout, TimeUnit unit) throws InterruptedException;
+
+    void lock(Serializable id, LockType lockType);
+
+    void unlock(Serializable id);
+
+    /** Return the stripe which the ID belongs to. (it is used in the unit of the metrics) */
+    int stripe(Serializable id);
+
+    /** Return the number of the stripes. */
+    int stripes();
+
+    /**
+     * Return the key of the lock which the ID uses.
+     * <p>The IDs of the same key share the lock, so they are acquired once in the plural ID locks.
+     */
+    default Object lockKey(Serializable id) {
+        return id;
+    }
+
+    /** Return the stripe which the ID belongs to in the stripes of the power of two. */
+    static int stripe(Serializable id, int stripes) {
+        int h = id.hashCode();
+        return (h ^ (h >>> 16)) & (stripes - 1);
+    }
+
+    /** Return the smallest power of two which is greater than or equal to the stripes. */
+    static int stripes(int stripes) {
+        int n = Math.max(1, Math.min(stripes, 1 << 30));
+        int high = Integer.highestOneBit(n);
+        return high == n ? n : high << 1;
+    }
+
+    /**
+     * The lock table which holds a lock per ID.
+     * <p>The entry is reference-counted by the holder and the waiter,
+     *  and it is removed on the last unlock so that the table does not grow with the number of IDs.
+     */
+    @Singleton
+    @Requires(property = KeyMode, value = "counting", defaultValue = "counting")
+    public static class CountingLockEngine implements IdLockEngine {
+        private final ConcurrentMap<Serializable, CountingLock> lockMap = new ConcurrentHashMap<>();
+        private final int stripes;
+
+        public CountingLockEngine(@Value(KeyStripesEL) int stripes) {
+            this.stripes = IdLockEngine.stripes(stripes);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean tryLock(Serializable id, LockType lockType) {
+            CountingLock lock = retain(id);
+            boolean locked = lockType.isWrite() ? lock.writeLock().tryLock() : lock.readLock().tryLock();
+            if (!locked) {
+                release(id);
+            }
+            return locked;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean tryLock(Serializable id, LockType lockType, long timeout, TimeUnit unit)
+                throws InterruptedException {
+            CountingLock lock = retain(id);
+            boolean locked = false;
+            try {
+                locked = lockType.isWrite() ? lock.writeLock().tryLock(timeout, unit)
+                        : lock.readLock().tryLock(timeout, unit);
+                return locked;
+            } finally {
+                if (!locked) {
+                    release(id);
+                }
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void lock(Serializable id, LockType lockType) {
+            CountingLock lock = retain(id);
+            if (lockType.isWrite()) {
+                lock.writeLock().lock();
+            } else {
+                lock.readLock().lock();
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void unlock(Serializable id) {
+            CountingLock lock = lockMap.get(id);
+            if (lock == null) {
+                throw new IllegalMonitorStateException("The lock is not held. [" + id + "]");
+            }
+            if (lock.isWriteLockedByCurrentThread()) {
+                lock.writeLock().unlock();
+            } else {
+                lock.readLock().unlock();
+            }
+            release(id);
+        }
+
+        private CountingLock retain(Serializable id) {
+            return lockMap.compute(id, (k, v) -> (v == null ? new CountingLock() : v).retain());
+        }
+
+        private void release(Serializable id) {
+            lockMap.computeIfPresent(id, (k, v) -> v.release() ? null : v);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int stripe(Serializable id) {
+            return IdLockEngine.stripe(id, stripes);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int stripes() {
+            return stripes;
+        }
+
+        /** Return the number of the IDs which are locked or waited now. */
+        public int size() {
+            return lockMap.size();
+        }
+
+        /** The reference count is changed only in the atomic compute of the lock table. */
+        private static class CountingLock extends ReentrantReadWriteLock {
+            private static final long serialVersionUID = 1L;
+            private int refs;
+
+            CountingLock retain() {
+                refs++;
+                return this;
+            }
+
+            boolean release() {
+                return --refs == 0;
+            }
+        }
+    }
+
+    /**
+     * The lock table which shares a fixed number of locks hashed by ID.
+     * <p>The memory is constant regardless of the number of IDs,
+     *  but the different IDs which belong to the same stripe block each other.
+     * low: When you take the plural ID locks at the same time, use IdLockHandler#callAll
+     *  because the read lock and the write lock may conflict on the same stripe in the same thread.
+     */
+    @Singleton
+    @Requires(property = KeyMode, value = "striped")
+    public static class StripedLockEngine implements IdLockEngine {
+        private final ReentrantReadWriteLock[] locks;
+
+        public StripedLockEngine(@Value(KeyStripesEL) int stripes) {
+            this.locks = new ReentrantReadWriteLock[IdLockEngine.stripes(stripes)];
+            for (int i = 0; i < locks.length; i++) {
+                locks[i] = new ReentrantReadWriteLock();
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean tryLock(Serializable id, LockType lockType) {
+            ReentrantReadWriteLock lock = locks[stripe(id)];
+            return lockType.isWrite() ? lock.writeLock().tryLock() : lock.readLock().tryLock();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean tryLock(Serializable id, LockType lockType, long timeout, TimeUnit unit)
+                throws InterruptedException {
+            ReentrantReadWriteLock lock = locks[stripe(id)];
+            return lockType.isWrite() ? lock.writeLock().tryLock(timeout, unit)
+                    : lock.readLock().tryLock(timeout, unit);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void lock(Serializable id, LockType lockType) {
+            ReentrantReadWriteLock lock = locks[stripe(id)];
+            if (lockType.isWrite()) {
+                lock.writeLock().lock();
+            } else {
+                lock.readLock().lock();
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void unlock(Serializable id) {
+            ReentrantReadWriteLock lock = locks[stripe(id)];
+            if (lock.isWriteLockedByCurrentThread()) {
+                lock.writeLock().unlock();
+            } else {
+                lock.readLock().unlock();
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int stripe(Serializable id) {
+            return IdLockEngine.stripe(id, locks.length);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Object lockKey(Serializable id) {
+            return stripe(id);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int stripes() {
+            return locks.length;
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+package sample.context.lock;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import lombok.*;
+import sample.context.orm.*;
+
+/**
+ * The row of the ID lock table of the system schema.
+ * <p>It is locked by "for update" while the lease of the ID is acquired or released,
+ *  and it is removed when the last lease is released.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+public class IdLockEntry extends OrmActiveRecord<IdLockEntry> {
+    private static final long serialVersionUID = 1l;
+
+    @Id
+    @Size(max = 120)
+    private String id;
+    @NotNull
+    private LocalDateTime createDate;
+
+    /** Lock the row with "for update". (it is not locked when the row does not exist) */
+    public static Optional<IdLockEntry> getForUpdate(final OrmRepository rep, String id) {
+        return Optional.ofNullable(rep.em().find(IdLockEntry.class, id, LockModeType.PESSIMISTIC_WRITE));
+    }
+
+    /** Lock the row with "for update" and register it when it does not exist. */
+    public static IdLockEntry loadForUpdateOrRegister(final OrmRepository rep, String id) {
+        return getForUpdate(rep, id).orElseGet(() -> {
+            IdLockEntry entry = new IdLockEntry(id, rep.dh().time().date()).save(rep);
+            rep.flush();
+            return entry;
+        });
+    }
+
+}
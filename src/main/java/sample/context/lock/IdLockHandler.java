@@ -1,26 +1,75 @@
 package sample.context.lock;
 
 import java.io.Serializable;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.*;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Supplier;
 
 import javax.inject.Singleton;
 
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.Timer;
 import lombok.Value;
-import sample.InvocationException;
+import sample.*;
+import sample.ValidationException.ErrorKeys;
 
 /**
  * The lock of the ID unit.
  * low: It is simple and targets only the ID lock of the account unit here.
- * low: You take the pessimistic lock by "for update" demand on a lock table of DB,
- * but usually do it to memory lock because it is a sample.
+ * low: The memory lock is used by default, so it does not serialize the plural nodes.
+ * When you run the plural nodes, select "db" in "extension.lock.mode"
+ * to take the pessimistic lock by "for update" demand on a lock table of DB.
+ * <p>The lock table itself is delegated to IdLockEngine.
+ * When MeterRegistry is enabled, the wait / hold time and the contention of the lock are published.
  */
 @Singleton
 public class IdLockHandler {
+    public static final String KeyTimeout = "extension.lock.timeout";
+    public static final String KeyTimeoutEL = "${" + KeyTimeout + ":5s}";
 
-    private ConcurrentMap<Serializable, ReentrantReadWriteLock> lockMap = new ConcurrentHashMap<>();
+    public static final String MetricWait = "idlock.wait";
+    public static final String MetricHold = "idlock.hold";
+    public static final String MetricContention = "idlock.contention";
+    public static final String MetricTimeout = "idlock.timeout";
+    public static final String MetricStripeWait = "idlock.stripe.wait";
+
+    private final IdLockEngine engine;
+    private final Optional<MeterRegistry> metrics;
+    private final Map<LockType, Timer> waitTimers = new EnumMap<>(LockType.class);
+    private final Map<LockType, Timer> holdTimers = new EnumMap<>(LockType.class);
+    private final Map<LockType, Counter> contentionCounters = new EnumMap<>(LockType.class);
+    private final Map<LockType, Counter> timeoutCounters = new EnumMap<>(LockType.class);
+    private final AtomicReferenceArray<Timer> stripeTimers;
+
+    public IdLockHandler(IdLockEngine engine, Optional<MeterRegistry> metrics) {
+        this.engine = engine;
+        this.metrics = metrics;
+        this.stripeTimers = new AtomicReferenceArray<>(engine.stripes());
+        metrics.ifPresent(registry -> {
+            for (LockType lockType : LockType.values()) {
+                waitTimers.put(lockType, Timer.builder(MetricWait)
+                        .description("The wait time to acquire the ID lock.")
+                        .tag("type", lockType.name())
+                        .publishPercentileHistogram()
+                        .register(registry));
+                holdTimers.put(lockType, Timer.builder(MetricHold)
+                        .description("The hold time of the ID lock.")
+                        .tag("type", lockType.name())
+                        .publishPercentileHistogram()
+                        .register(registry));
+                contentionCounters.put(lockType, Counter.builder(MetricContention)
+                        .description("The number of the ID lock acquisitions which waited for the other holder.")
+                        .tag("type", lockType.name())
+                        .register(registry));
+                timeoutCounters.put(lockType, Counter.builder(MetricTimeout)
+                        .description("The number of the ID lock acquisitions which gave up in the timeout.")
+                        .tag("type", lockType.name())
+                        .register(registry));
+            }
+        });
+    }
 
     public void call(Serializable id, LockType lockType, final Runnable command) {
         call(id, lockType, () -> {
@@ -35,6 +84,138 @@ public class IdLockHandler {
         } else {
             readLock(id);
         }
+        return callInLock(id, lockType, callable);
+    }
+
+    /**
+     * Call it in the ID lock which is acquired within the timeout.
+     * <p>When the lock cannot be acquired in time, ValidationException(ErrorKeys.IdLockTimeout) is thrown.
+     * The timeout of zero does not wait for the other holder.
+     */
+    public void tryCall(Serializable id, LockType lockType, Duration timeout, final Runnable command) {
+        tryCall(id, lockType, timeout, () -> {
+            command.run();
+            return true;
+        });
+    }
+
+    /**
+     * Call it in the ID lock which is acquired within the timeout.
+     * <p>When the lock cannot be acquired in time, ValidationException(ErrorKeys.IdLockTimeout) is thrown.
+     * The timeout of zero does not wait for the other holder.
+     */
+    public <T> T tryCall(Serializable id, LockType lockType, Duration timeout, final Supplier<T> callable) {
+        if (!tryLock(id, lockType, timeout)) {
+            throw new ValidationException(ErrorKeys.IdLockTimeout);
+        }
+        return callInLock(id, lockType, callable);
+    }
+
+    /**
+     * Call it in the plural ID locks.
+     * <p>The locks are acquired in the canonical order regardless of the order of the pairs
+     *  so that the plural callers do not deadlock, and they are released in the reverse order.
+     * The pairs of the same lock are acquired once, and the write lock has priority.
+     */
+    public void callAll(Collection<IdLockPair> pairs, final Runnable command) {
+        callAll(pairs, () -> {
+            command.run();
+            return true;
+        });
+    }
+
+    /**
+     * Call it in the plural ID locks.
+     * <p>The locks are acquired in the canonical order regardless of the order of the pairs
+     *  so that the plural callers do not deadlock, and they are released in the reverse order.
+     * The pairs of the same lock are acquired once, and the write lock has priority.
+     */
+    public <T> T callAll(Collection<IdLockPair> pairs, final Supplier<T> callable) {
+        List<IdLockPair> locked = new ArrayList<>();
+        try {
+            for (IdLockPair pair : canonical(pairs)) {
+                lock(pair.getId(), pair.getLockType());
+                locked.add(pair);
+            }
+        } catch (RuntimeException e) {
+            unlockAll(locked);
+            throw e;
+        }
+        return callInLocks(locked, callable);
+    }
+
+    /**
+     * Call it in the plural ID locks which are acquired within the timeout.
+     * <p>When all the locks cannot be acquired in time, the acquired locks are released
+     *  and ValidationException(ErrorKeys.IdLockTimeout) is thrown.
+     */
+    public void tryCallAll(Collection<IdLockPair> pairs, Duration timeout, final Runnable command) {
+        tryCallAll(pairs, timeout, () -> {
+            command.run();
+            return true;
+        });
+    }
+
+    /**
+     * Call it in the plural ID locks which are acquired within the timeout.
+     * <p>When all the locks cannot be acquired in time, the acquired locks are released
+     *  and ValidationException(ErrorKeys.IdLockTimeout) is thrown.
+     */
+    public <T> T tryCallAll(Collection<IdLockPair> pairs, Duration timeout, final Supplier<T> callable) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<IdLockPair> locked = new ArrayList<>();
+        try {
+            for (IdLockPair pair : canonical(pairs)) {
+                Duration remain = Duration.ofNanos(Math.max(0L, deadline - System.nanoTime()));
+                if (!tryLock(pair.getId(), pair.getLockType(), remain)) {
+                    throw new ValidationException(ErrorKeys.IdLockTimeout);
+                }
+                locked.add(pair);
+            }
+        } catch (RuntimeException e) {
+            unlockAll(locked);
+            throw e;
+        }
+        return callInLocks(locked, callable);
+    }
+
+    /** Return the pairs of the distinct locks which are sorted by the stripe and the ID. */
+    private List<IdLockPair> canonical(Collection<IdLockPair> pairs) {
+        Map<Object, IdLockPair> keyMap = new HashMap<>();
+        for (IdLockPair pair : pairs) {
+            Objects.requireNonNull(pair.getId(), "id is required.");
+            keyMap.merge(engine.lockKey(pair.getId()), pair,
+                    (current, other) -> current.getLockType().isWrite() ? current : other);
+        }
+        List<IdLockPair> ordered = new ArrayList<>(keyMap.values());
+        ordered.sort(Comparator.comparingInt((IdLockPair pair) -> engine.stripe(pair.getId()))
+                .thenComparing(pair -> pair.getId().toString()));
+        return ordered;
+    }
+
+    private <T> T callInLocks(List<IdLockPair> locked, final Supplier<T> callable) {
+        long start = System.nanoTime();
+        try {
+            return callable.get();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new InvocationException("error.Exception", e);
+        } finally {
+            unlockAll(locked);
+            long holdNanos = System.nanoTime() - start;
+            locked.forEach(pair -> recordHold(pair.getLockType(), holdNanos));
+        }
+    }
+
+    private void unlockAll(List<IdLockPair> locked) {
+        for (int i = locked.size() - 1; 0 <= i; i--) {
+            unlock(locked.get(i).getId());
+        }
+    }
+
+    private <T> T callInLock(Serializable id, LockType lockType, final Supplier<T> callable) {
+        long start = System.nanoTime();
         try {
             return callable.get();
         } catch (RuntimeException e) {
@@ -43,33 +224,95 @@ public class IdLockHandler {
             throw new InvocationException("error.Exception", e);
         } finally {
             unlock(id);
+            recordHold(lockType, System.nanoTime() - start);
         }
     }
 
     public void writeLock(final Serializable id) {
         Optional.of(id).ifPresent((v) -> {
-            idLock(v).writeLock().lock();
+            lock(v, LockType.Write);
         });
     }
 
-    private ReentrantReadWriteLock idLock(final Serializable id) {
-        return lockMap.computeIfAbsent(id, v -> new ReentrantReadWriteLock());
-    }
-
     public void readLock(final Serializable id) {
         Optional.of(id).ifPresent((v) -> {
-            idLock(v).readLock().lock();
+            lock(v, LockType.Read);
         });
     }
 
+    /** Acquire the write lock within the timeout. */
+    public boolean tryWriteLock(final Serializable id, Duration timeout) {
+        return tryLock(id, LockType.Write, timeout);
+    }
+
+    /** Acquire the read lock within the timeout. */
+    public boolean tryReadLock(final Serializable id, Duration timeout) {
+        return tryLock(id, LockType.Read, timeout);
+    }
+
+    private void lock(final Serializable id, LockType lockType) {
+        if (engine.tryLock(id, lockType)) {
+            recordWait(id, lockType, 0L, false);
+            return;
+        }
+        long start = System.nanoTime();
+        engine.lock(id, lockType);
+        recordWait(id, lockType, System.nanoTime() - start, true);
+    }
+
+    private boolean tryLock(final Serializable id, LockType lockType, Duration timeout) {
+        Objects.requireNonNull(id, "id is required.");
+        if (engine.tryLock(id, lockType)) {
+            recordWait(id, lockType, 0L, false);
+            return true;
+        }
+        long start = System.nanoTime();
+        boolean locked;
+        try {
+            locked = engine.tryLock(id, lockType, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvocationException("error.Exception", e);
+        }
+        if (locked) {
+            recordWait(id, lockType, System.nanoTime() - start, true);
+        } else {
+            metrics.ifPresent(registry -> timeoutCounters.get(lockType).increment());
+        }
+        return locked;
+    }
+
+    private void recordWait(final Serializable id, LockType lockType, long waitNanos, boolean contended) {
+        if (!metrics.isPresent()) {
+            return;
+        }
+        waitTimers.get(lockType).record(waitNanos, TimeUnit.NANOSECONDS);
+        if (contended) {
+            contentionCounters.get(lockType).increment();
+            stripeTimer(engine.stripe(id)).record(waitNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void recordHold(LockType lockType, long holdNanos) {
+        metrics.ifPresent(registry -> holdTimers.get(lockType).record(holdNanos, TimeUnit.NANOSECONDS));
+    }
+
+    /** The timer of the stripe is registered at the time of the first contention. */
+    private Timer stripeTimer(int stripe) {
+        Timer timer = stripeTimers.get(stripe);
+        if (timer == null) {
+            timer = Timer.builder(MetricStripeWait)
+                    .description("The wait time of the contended ID lock per stripe.")
+                    .tag("stripe", String.valueOf(stripe))
+                    .register(metrics.get());
+            stripeTimers.compareAndSet(stripe, null, timer);
+        }
+        return timer;
+    }
+
     public void unlock(final Serializable id) {
         Optional.of(id).ifPresent((v) -> {
-            ReentrantReadWriteLock idLock = idLock(v);
-            if (idLock.isWriteLockedByCurrentThread()) {
-                idLock.writeLock().unlock();
-            } else {
-                idLock.readLock().unlock();
-            }
+            engine.unlock(v);
         });
     }
 
@@ -90,6 +333,14 @@ public class IdLockHandler {
     public static class IdLockPair {
         private Serializable id;
         private LockType lockType;
+
+        public static IdLockPair read(Serializable id) {
+            return new IdLockPair(id, LockType.Read);
+        }
+
+        public static IdLockPair write(Serializable id) {
+            return new IdLockPair(id, LockType.Write);
+        }
     }
-    
+
 }
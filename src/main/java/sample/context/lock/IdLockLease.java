@@ -0,0 +1,101 @@
+package sample.context.lock;
+
+import java.time.*;
+import java.util.List;
+
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import lombok.*;
+import sample.context.lock.IdLockHandler.LockType;
+import sample.context.orm.*;
+
+/**
+ * The lease of the ID lock which a holder of the node acquired.
+ * <p>The lease is extended by the heartbeat of the node while it is held.
+ * The lease which the crashed node left is regarded as released when it expires.
+ */
+@Entity
+@Table(indexes = @Index(columnList = "lockId"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+public class IdLockLease extends OrmActiveRecord<IdLockLease> {
+    private static final long serialVersionUID = 1l;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "id_lock_lease_seq")
+    @SequenceGenerator(name = "id_lock_lease_seq", sequenceName = "id_lock_lease_seq", allocationSize = IdAllocationSize)
+    private Long id;
+    @NotNull
+    @Size(max = 120)
+    private String lockId;
+    /** The node which holds the lease */
+    @NotNull
+    @Size(max = 60)
+    private String node;
+    /** The holder in the node (node and thread) */
+    @NotNull
+    @Size(max = 120)
+    private String owner;
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private LockType lockType;
+    @NotNull
+    private LocalDateTime expireDate;
+
+    /** Whether the lease conflicts with the acquisition of the other holder. */
+    public boolean conflicts(String owner, LockType lockType) {
+        return !this.owner.equals(owner) && (lockType.isWrite() || this.lockType.isWrite());
+    }
+
+    public static List<IdLockLease> find(final OrmRepository rep, String lockId) {
+        return rep.tmpl().find("from IdLockLease l where l.lockId=?1", lockId);
+    }
+
+    /**
+     * Acquire the lease of the ID.
+     * <p>The acquisition of the same ID is serialized by "for update" of IdLockEntry,
+     *  and the expired leases are removed before the conflict check.
+     * @return false when the other holder has the conflicting lease.
+     */
+    public static boolean acquire(final OrmRepository rep, String lockId, String node, String owner,
+            LockType lockType, Duration lease) {
+        IdLockEntry.loadForUpdateOrRegister(rep, lockId);
+        LocalDateTime now = rep.dh().time().date();
+        rep.tmpl().execute("delete from IdLockLease l where l.lockId=?1 and l.expireDate<?2", lockId, now);
+        boolean conflicted = find(rep, lockId).stream().anyMatch(l -> l.conflicts(owner, lockType));
+        if (conflicted) {
+            return false;
+        }
+        new IdLockLease(null, lockId, node, owner, lockType, now.plus(lease)).save(rep);
+        return true;
+    }
+
+    /** Release the lease of the holder and remove IdLockEntry when no lease remains. */
+    public static void release(final OrmRepository rep, String lockId, String owner) {
+        IdLockEntry.getForUpdate(rep, lockId).ifPresent(entry -> {
+            rep.tmpl().execute("delete from IdLockLease l where l.lockId=?1 and l.owner=?2", lockId, owner);
+            if (find(rep, lockId).isEmpty()) {
+                entry.delete(rep);
+            }
+        });
+    }
+
+    public static List<IdLockLease> findByNode(final OrmRepository rep, String node) {
+        return rep.tmpl().find("from IdLockLease l where l.node=?1", node);
+    }
+
+    /** Extend all the leases which the node holds. */
+    public static int extend(final OrmRepository rep, String node, Duration lease) {
+        LocalDateTime expireDate = rep.dh().time().date().plus(lease);
+        return rep.tmpl().execute("update IdLockLease l set l.expireDate=?1 where l.node=?2", expireDate, node);
+    }
+
+    /** Release all the leases which the node holds. */
+    public static int releaseAll(final OrmRepository rep, String node) {
+        return rep.tmpl().execute("delete from IdLockLease l where l.node=?1", node);
+    }
+
+}
@@ -25,6 +25,11 @@ import sample.util.Validator;
  */
 public class OrmActiveRecord<T extends Entity> implements Serializable, Entity {
     private static final long serialVersionUID = 1L;
+    /**
+     * The allocation size of the pooled sequence of the generated id.
+     * <p>The ids are allocated in a mass so that the insert can be batched. (see hibernate.jdbc.batch_size)
+     */
+    public static final int IdAllocationSize = 50;
     
     @SuppressWarnings("unchecked")
     protected T validate(Consumer<Validator> proc) {
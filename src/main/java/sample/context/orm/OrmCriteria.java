@@ -59,6 +59,11 @@ public class OrmCriteria<T> {
         return root;
     }
     
+    /** Create the subquery of the query. (add it by #add) */
+    public <Y> Subquery<Y> subquery(Class<Y> type) {
+        return query.subquery(type);
+    }
+
     /**
      * Target Field (@ManyToOne) who is available for Join in an argument.
      * <p>The element which did Join maintains it in an origin of summons, and please use it as needed.
@@ -0,0 +1,76 @@
+package sample.context.orm;
+
+import java.util.*;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.ScrollableResults;
+
+/**
+ * The forward-only cursor of the query result.
+ * <p>The session is cleared every clearSize rows, so the memory does not depend on the number of rows.
+ *  (the returned entity is detached when the next clear happens)
+ * Please make sure to close it.
+ */
+public class OrmCursor<T> implements Iterator<T>, AutoCloseable {
+    private final EntityManager em;
+    private final ScrollableResults results;
+    private final int clearSize;
+    private Optional<Runnable> onClose = Optional.empty();
+    private long count;
+    private Boolean hasNext;
+
+    OrmCursor(EntityManager em, ScrollableResults results, int clearSize) {
+        this.em = em;
+        this.results = results;
+        this.clearSize = clearSize;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNext() {
+        if (hasNext == null) {
+            if (0 < count && count % clearSize == 0) {
+                em.clear();
+            }
+            hasNext = results.next();
+        }
+        return hasNext;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        hasNext = null;
+        count++;
+        Object[] row = results.get();
+        return (T) (row.length == 1 ? row[0] : row);
+    }
+
+    /** Return the number of the rows which were returned by #next. */
+    public long count() {
+        return count;
+    }
+
+    /** Run the action after the cursor is closed. (e.g. close the session which owns the cursor) */
+    OrmCursor<T> onClose(Runnable action) {
+        this.onClose = Optional.of(action);
+        return this;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        try {
+            results.close();
+            em.clear();
+        } finally {
+            onClose.ifPresent(Runnable::run);
+        }
+    }
+
+}
@@ -0,0 +1,249 @@
+package sample.context.orm;
+
+import java.io.Serializable;
+import java.time.temporal.Temporal;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.EntityType;
+
+import org.hibernate.*;
+import org.springframework.transaction.support.*;
+
+import sample.context.cache.CacheHandler;
+
+/**
+ * The cache of the JPQL results which is enabled by OrmQueryMetadata#cacheable.
+ * <p>The result is cached by CacheHandler with the key of (JPQL, arguments),
+ *  in the region of the entities which the JPQL refers to. ("query:Holiday")
+ * The entity of the result is cached as its id, and it is loaded on the session of the caller
+ *  by the multi id load. (the second-level cache is used when it is enabled)
+ * The result which is not the entities of a type or the simple values is not cached.
+ * <p>The change of the entity by OrmRepository#save / update / delete and OrmTemplate#execute
+ *  is tracked per the transaction, and the regions of the entity are evicted when it is committed.
+ * The transaction which changes the entity does not use the cache, and the result which is loaded
+ *  during the change of the other transaction is not cached.
+ * <p>The bounds and the metrics are the ones of CacheHandler. ("extension.cache.*")
+ * low: The change which does not pass OrmRepository (ex. the native SQL) is reflected after TTL.
+ */
+public class OrmQueryCache {
+    public static final String RegionPrefix = "query:";
+
+    private final SessionFactory sf;
+    private final CacheHandler cache;
+    private final Map<String, EntityState> entities = new HashMap<>();
+    private final Set<Class<?>> entityClasses = new HashSet<>();
+    private final ConcurrentMap<String, QueryRegion> regions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> entityRegions = new ConcurrentHashMap<>();
+
+    public OrmQueryCache(SessionFactory sf, CacheHandler cache) {
+        this.sf = sf;
+        this.cache = cache;
+        for (EntityType<?> type : sf.getMetamodel().getEntities()) {
+            this.entities.put(type.getName(), new EntityState());
+            this.entityClasses.add(type.getJavaType());
+        }
+    }
+
+    /** Return the cached result of the JPQL, or load and cache it. */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> find(final EntityManager em, String qlString, final Object[] args,
+            final Supplier<List<T>> loader) {
+        if (!cache.enabled()) {
+            return loader.get();
+        }
+        QueryRegion region = region(qlString);
+        if (changes().map(c -> c.containsAny(region.entityNames)).orElse(false) || region.pending()) {
+            return loader.get(); // the change of the entity is not committed
+        }
+        long stamp = region.stamp();
+        List<Object> key = Arrays.asList(qlString, Arrays.asList(args));
+        AtomicReference<List<T>> loaded = new AtomicReference<>();
+        CachedResult cached = cache.load(region.name, key, () -> {
+            List<T> v = loader.get();
+            loaded.set(v);
+            return CachedResult.of(this, v);
+        });
+        if (region.pending() || region.stamp() != stamp) {
+            cache.evict(region.name, key); // the other transaction changed the entity during the load
+        }
+        return loaded.get() != null ? loaded.get() : (List<T>) cached.restore(em);
+    }
+
+    private QueryRegion region(String qlString) {
+        return regions.computeIfAbsent(qlString, ql -> {
+            QueryRegion region = new QueryRegion(new TreeSet<>(referredEntities(ql)));
+            region.entityNames.forEach(name -> entityRegions
+                    .computeIfAbsent(name, k -> ConcurrentHashMap.newKeySet()).add(region.name));
+            return region;
+        });
+    }
+
+    private Set<String> referredEntities(String qlString) {
+        Set<String> names = new HashSet<>();
+        for (String token : qlString.split("[^\\w$]+")) {
+            if (entities.containsKey(token)) {
+                names.add(token);
+            }
+        }
+        return names;
+    }
+
+    /** Evict the results which refer to the entity. */
+    public void changed(Object entity) {
+        if (cache.enabled()) {
+            changedEntity(Hibernate.getClass(entity).getSimpleName());
+        }
+    }
+
+    /** Evict the results which refer to the entities of the JPQL. (the bulk update / delete) */
+    public void changedBy(String qlString) {
+        if (cache.enabled()) {
+            referredEntities(qlString).forEach(this::changedEntity);
+        }
+    }
+
+    /**
+     * Track the change of the entity.
+     * <p>In the transaction, the regions of the entity are evicted when it is committed.
+     * Out of the transaction, the regions are evicted.
+     */
+    private void changedEntity(String entityName) {
+        EntityState state = entities.get(entityName);
+        if (state == null) {
+            return;
+        }
+        Optional<TxChanges> changes = changes();
+        if (!changes.isPresent() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TxChanges created = new TxChanges();
+            TransactionSynchronizationManager.registerSynchronization(created);
+            changes = Optional.of(created);
+        }
+        if (changes.isPresent()) {
+            if (changes.get().entityNames.add(entityName)) {
+                state.pending.incrementAndGet();
+            }
+        } else {
+            evictEntity(entityName);
+        }
+    }
+
+    private void evictEntity(String entityName) {
+        entities.get(entityName).stamp.incrementAndGet();
+        Set<String> names = entityRegions.get(entityName);
+        if (names != null) {
+            names.forEach(cache::evictAll);
+        }
+    }
+
+    private Optional<TxChanges> changes() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return Optional.empty();
+        }
+        return TransactionSynchronizationManager.getSynchronizations().stream()
+                .filter(s -> s instanceof TxChanges && ((TxChanges) s).owner() == this)
+                .map(s -> (TxChanges) s)
+                .findFirst();
+    }
+
+    /** The names of the entities which the transaction changes. */
+    private class TxChanges extends TransactionSynchronizationAdapter {
+        private final Set<String> entityNames = new HashSet<>();
+
+        OrmQueryCache owner() {
+            return OrmQueryCache.this;
+        }
+
+        boolean containsAny(Collection<String> names) {
+            return names.stream().anyMatch(entityNames::contains);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            boolean committed = status == TransactionSynchronization.STATUS_COMMITTED;
+            entityNames.forEach(name -> {
+                if (committed) {
+                    evictEntity(name);
+                }
+                entities.get(name).pending.decrementAndGet();
+            });
+        }
+    }
+
+    /** The change of the entity. (the stamp counts the committed changes) */
+    private static class EntityState {
+        private final AtomicLong stamp = new AtomicLong();
+        private final AtomicInteger pending = new AtomicInteger();
+    }
+
+    /** The region of the results of the JPQL. ("query:" + the entity names) */
+    private class QueryRegion {
+        private final String name;
+        private final Set<String> entityNames;
+        private final List<EntityState> states;
+
+        QueryRegion(Set<String> entityNames) {
+            this.name = RegionPrefix + String.join(",", entityNames);
+            this.entityNames = entityNames;
+            this.states = entityNames.stream().map(entities::get).collect(Collectors.toList());
+        }
+
+        boolean pending() {
+            return states.stream().anyMatch(state -> 0 < state.pending.get());
+        }
+
+        long stamp() {
+            return states.stream().mapToLong(state -> state.stamp.get()).sum();
+        }
+    }
+
+    /**
+     * The cached result which does not share the instances between the sessions.
+     * <p>The entities are kept as their ids, and the simple values are kept as they are.
+     */
+    private static class CachedResult {
+        private final Class<?> entityClass;
+        private final List<Object> values;
+
+        CachedResult(Class<?> entityClass, List<Object> values) {
+            this.entityClass = entityClass;
+            this.values = values;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<?> restore(final EntityManager em) {
+            if (entityClass == null) {
+                return new ArrayList<>(values);
+            }
+            List<?> list = em.unwrap(Session.class).byMultipleIds(entityClass).multiLoad((List<Serializable>) (List<?>) values);
+            return list.stream().filter(Objects::nonNull).collect(Collectors.toList());
+        }
+
+        /** Return the result to cache, or null when it can not be cached. */
+        static CachedResult of(final OrmQueryCache owner, final List<?> list) {
+            Set<Class<?>> classes = list.stream()
+                    .<Class<?>> map(v -> v == null ? null : Hibernate.getClass(v))
+                    .collect(Collectors.toSet());
+            if (classes.size() == 1 && owner.entityClasses.contains(classes.iterator().next())) {
+                List<Object> ids = list.stream()
+                        .map(v -> (Serializable) owner.sf.getPersistenceUnitUtil().getIdentifier(v))
+                        .collect(Collectors.toList());
+                return new CachedResult(classes.iterator().next(), Collections.unmodifiableList(ids));
+            }
+            if (list.stream().allMatch(CachedResult::simpleValue)) {
+                return new CachedResult(null, Collections.unmodifiableList(new ArrayList<>(list)));
+            }
+            return null;
+        }
+
+        private static boolean simpleValue(Object v) {
+            return v == null || v instanceof Number || v instanceof String || v instanceof Boolean
+                    || v instanceof Enum || v instanceof Temporal;
+        }
+    }
+
+}
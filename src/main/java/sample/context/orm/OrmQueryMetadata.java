@@ -11,6 +11,9 @@ public class OrmQueryMetadata {
 
     private final Map<String, Object> hints = new HashMap<>();
     private Optional<LockModeType> lockMode = Optional.empty();
+    private Optional<Integer> fetchSize = Optional.empty();
+    private Optional<Integer> clearSize = Optional.empty();
+    private boolean cacheable;
     
     private OrmQueryMetadata() {}
     
@@ -22,6 +25,21 @@ public class OrmQueryMetadata {
         return lockMode;
     }
     
+    /** The JDBC fetch size of OrmTemplate#scroll */
+    public Optional<Integer> fetchSize() {
+        return fetchSize;
+    }
+
+    /** The number of rows to clear the session in OrmTemplate#scroll */
+    public Optional<Integer> clearSize() {
+        return clearSize;
+    }
+
+    /** Whether the result of OrmTemplate#find(String, Object...) is cached (see OrmQueryCache) */
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
     public OrmQueryMetadata hint(String hintName, Object value) {
         this.hints.put(hintName, value);
         return this;
@@ -32,6 +50,21 @@ public class OrmQueryMetadata {
         return this;
     }
 
+    public OrmQueryMetadata fetchSize(int fetchSize) {
+        this.fetchSize = Optional.of(fetchSize);
+        return this;
+    }
+
+    public OrmQueryMetadata clearSize(int clearSize) {
+        this.clearSize = Optional.of(clearSize);
+        return this;
+    }
+
+    public OrmQueryMetadata cacheable() {
+        this.cacheable = true;
+        return this;
+    }
+
     public static OrmQueryMetadata empty() {
         return new OrmQueryMetadata();
     }
@@ -44,4 +77,12 @@ public class OrmQueryMetadata {
         return empty().hint(hintName, value);
     }
 
+    public static OrmQueryMetadata withFetchSize(int fetchSize) {
+        return empty().fetchSize(fetchSize);
+    }
+
+    public static OrmQueryMetadata withCache() {
+        return empty().cacheable();
+    }
+
 }
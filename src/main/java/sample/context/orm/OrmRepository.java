@@ -2,10 +2,14 @@ package sample.context.orm;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.function.Function;
 
 import javax.persistence.*;
 
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
 
 import sample.ValidationException;
 import sample.ValidationException.ErrorKeys;
@@ -17,10 +21,13 @@ import sample.context.Entity;
  * <p>Repository made in succession to OrmRepository becomes the data source unit.
  */
 public abstract class OrmRepository implements Repository {
+    /** The batch size of saveAll when "hibernate.jdbc.batch_size" is not set */
+    public static final int DefaultBatchSize = 50;
 
     private final SessionFactory sf;
     private final DomainHelper dh;
     private final Optional<OrmInterceptor> interceptor;
+    private volatile OrmQueryCache queryCache;
     
     public OrmRepository(SessionFactory sf, DomainHelper dh, Optional<OrmInterceptor> interceptor) {
         this.sf = sf;
@@ -52,16 +59,63 @@ public abstract class OrmRepository implements Repository {
         return interceptor;
     }
 
+    /**
+     * Return the query cache of the data source.
+     * <p>It is created on the first call because CacheHandler is provided lazily. (see DomainHelper)
+     */
+    public OrmQueryCache queryCache() {
+        if (queryCache == null) {
+            synchronized (this) {
+                if (queryCache == null) {
+                    queryCache = new OrmQueryCache(sf(), dh().cache());
+                }
+            }
+        }
+        return queryCache;
+    }
+
     /**
      * Return the simple accessor of the ORM operation.
      * <p>OrmTemplate is created each call.
      */
     public OrmTemplate tmpl() {
-        return new OrmTemplate(em());
+        return new OrmTemplate(em(), null, Optional.of(queryCache()));
     }
     
     public OrmTemplate tmpl(OrmQueryMetadata metadata) {
-        return new OrmTemplate(em(), metadata);
+        return new OrmTemplate(em(), metadata, Optional.of(queryCache()));
+    }
+
+    /**
+     * Open the cursor on the new read-only session which is independent of the current transaction.
+     * <p>The session is not bound to the thread, so the cursor can be read across the threads one at a time.
+     *  (e.g. the chunked HTTP response) The session is closed with the cursor.
+     */
+    public <T> OrmCursor<T> openCursor(Function<OrmTemplate, OrmCursor<T>> query) {
+        return openCursor(OrmQueryMetadata.empty(), query);
+    }
+
+    /**
+     * Open the cursor on the new read-only session which is independent of the current transaction.
+     * <p>see {@link #openCursor(Function)}
+     */
+    public <T> OrmCursor<T> openCursor(OrmQueryMetadata metadata, Function<OrmTemplate, OrmCursor<T>> query) {
+        Session session = sf().openSession();
+        try {
+            session.setDefaultReadOnly(true);
+            session.setHibernateFlushMode(FlushMode.MANUAL);
+            Transaction tx = session.beginTransaction();
+            return query.apply(new OrmTemplate(session, metadata)).onClose(() -> {
+                try {
+                    tx.rollback();
+                } finally {
+                    session.close();
+                }
+            });
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
     }
 
     /** Create Criteria centering on the Entity class. */
@@ -103,6 +157,14 @@ public abstract class OrmRepository implements Repository {
         return m;
     }
 
+    /**
+     * Return the entity of the simple natural id. ({@literal @}NaturalId)
+     * <p>The id is resolved by the natural id cache when the second-level cache is enabled.
+     */
+    public <T extends Entity> Optional<T> getByNaturalId(Class<T> clazz, Serializable naturalId) {
+        return em().unwrap(Session.class).bySimpleNaturalId(clazz).loadOptional(naturalId);
+    }
+
     /** {@inheritDoc} */
     @Override
     public <T extends Entity> boolean exists(Class<T> clazz, Serializable id) {
@@ -120,13 +182,43 @@ public abstract class OrmRepository implements Repository {
     public <T extends Entity> T save(T entity) {
         interceptor().ifPresent(i -> i.touchForCreate(entity));
         em().persist(entity);
+        queryCache().changed(entity);
         return entity;
     }
 
+    /**
+     * Save the entities and flush / clear the session cache every batch size.
+     * <p>The batch size is "hibernate.jdbc.batch_size", so the inserts are sent in JDBC batches.
+     * The entities which are flushed are detached from the session cache.
+     */
+    public <T extends Entity> List<T> saveAll(Collection<T> entities) {
+        int batchSize = sf().getSessionFactoryOptions().getJdbcBatchSize();
+        return saveAll(entities, 0 < batchSize ? batchSize : DefaultBatchSize);
+    }
+
+    /**
+     * Save the entities and flush / clear the session cache every batchSize.
+     * <p>The entities which are flushed are detached from the session cache.
+     */
+    public <T extends Entity> List<T> saveAll(Collection<T> entities, int batchSize) {
+        List<T> list = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            list.add(save(entity));
+            if (list.size() % batchSize == 0) {
+                flushAndClear();
+            }
+        }
+        if (list.size() % batchSize != 0) {
+            flushAndClear();
+        }
+        return list;
+    }
+
     /** {@inheritDoc} */
     @Override
     public <T extends Entity> T saveOrUpdate(T entity) {
         interceptor().ifPresent(i -> i.touchForUpdate(entity));
+        queryCache().changed(entity);
         return em().merge(entity);
     }
 
@@ -134,12 +226,14 @@ public abstract class OrmRepository implements Repository {
     @Override
     public <T extends Entity> T update(T entity) {
         interceptor().ifPresent(i -> i.touchForUpdate(entity));
+        queryCache().changed(entity);
         return em().merge(entity);
     }
 
     /** {@inheritDoc} */
     @Override
     public <T extends Entity> T delete(T entity) {
+        queryCache().changed(entity);
         em().remove(entity);
         return entity;
     }
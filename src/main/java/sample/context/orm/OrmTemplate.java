@@ -6,6 +6,8 @@ import java.util.function.*;
 import javax.persistence.*;
 import javax.persistence.criteria.CriteriaQuery;
 
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
 import org.springframework.util.Assert;
 
 import sample.ValidationException;
@@ -18,18 +20,25 @@ import sample.ValidationException.ErrorKeys;
  * add a wrap method as needed.
  */
 public class OrmTemplate {
+    /** The JDBC fetch size of #scroll when OrmQueryMetadata#fetchSize is not set */
+    public static final int DefaultFetchSize = 500;
    
     private final EntityManager em;
     private final Optional<OrmQueryMetadata> metadata;
+    private final Optional<OrmQueryCache> queryCache;
 
     public OrmTemplate(EntityManager em) {
-        this.em = em;
-        this.metadata = Optional.empty();
+        this(em, null);
     }
     
     public OrmTemplate(EntityManager em, OrmQueryMetadata metadata) {
+        this(em, metadata, Optional.empty());
+    }
+
+    public OrmTemplate(EntityManager em, OrmQueryMetadata metadata, Optional<OrmQueryCache> queryCache) {
         this.em = em;
         this.metadata = Optional.ofNullable(metadata);
+        this.queryCache = queryCache;
     }
 
     private <T> TypedQuery<T> query(final CriteriaQuery<T> query) {
@@ -142,9 +151,13 @@ public class OrmTemplate {
     /**
      * Find entity in JPQL.
      * <p>When you set Map in args, handle it as an argument with the names. (Map key is string only)
+     * <p>When OrmQueryMetadata#cacheable is set, the result is cached. (see OrmQueryCache)
      */
     @SuppressWarnings("unchecked")
     public <T> List<T> find(final String qlString, final Object... args) {
+        if (queryCache.isPresent() && metadata.map(OrmQueryMetadata::isCacheable).orElse(false)) {
+            return queryCache.get().find(em, qlString, args, () -> bindArgs(em.createQuery(qlString), args).getResultList());
+        }
         return bindArgs(em.createQuery(qlString), args).getResultList();
     }
 
@@ -231,6 +244,7 @@ public class OrmTemplate {
      * <p>When you set Map in args, handle it as an argument with the names. (Map key is string only)
      */
     public int execute(String qlString, final Object... args) {
+        queryCache.ifPresent(cache -> cache.changedBy(qlString));
         return bindArgs(em.createQuery(qlString), args).executeUpdate();
     }
     
@@ -256,6 +270,84 @@ public class OrmTemplate {
         proc.accept((StoredProcedureQuery)bindArgs(em.createStoredProcedureQuery(procedureName)));
     }
 
+    /**
+     * Scroll entity in Criteria by the forward-only cursor.
+     * <p>The session is cleared every OrmQueryMetadata#clearSize (default is the fetch size) rows,
+     *  so the memory does not depend on the number of rows. (the entity which was passed to the consumer is detached)
+     * Use it in the read-only transaction because the session is cleared.
+     * @return the number of rows
+     */
+    public <T> long scroll(final CriteriaQuery<T> criteria, final Consumer<T> consumer) {
+        return scroll(query(criteria), consumer);
+    }
+
+    /**
+     * Scroll entity in Criteria by the forward-only cursor.
+     * <p>see {@link #scroll(CriteriaQuery, Consumer)}
+     */
+    public <T> long scroll(Class<T> entityClass, Function<OrmCriteria<T>, CriteriaQuery<T>> func,
+            final Consumer<T> consumer) {
+        return scroll(func.apply(OrmCriteria.of(em, entityClass)), consumer);
+    }
+
+    /**
+     * Scroll entity in JPQL by the forward-only cursor.
+     * <p>see {@link #scroll(CriteriaQuery, Consumer)}
+     * <p>When you set Map in args, handle it as an argument with the names. (Map key is string only)
+     */
+    public <T> long scroll(final String qlString, final Consumer<T> consumer, final Object... args) {
+        return scroll(cursor(qlString, args), consumer);
+    }
+
+    private <T> long scroll(final OrmCursor<T> cursor, final Consumer<T> consumer) {
+        try (OrmCursor<T> c = cursor) {
+            c.forEachRemaining(consumer);
+            return c.count();
+        }
+    }
+
+    private <T> long scroll(final Query query, final Consumer<T> consumer) {
+        return scroll(cursor(query), consumer);
+    }
+
+    /**
+     * Open the forward-only cursor of entity in Criteria.
+     * <p>The cursor behaves like {@link #scroll(CriteriaQuery, Consumer)} and must be closed by the caller.
+     */
+    public <T> OrmCursor<T> cursor(final CriteriaQuery<T> criteria) {
+        return cursor(query(criteria));
+    }
+
+    /**
+     * Open the forward-only cursor of entity in Criteria.
+     * <p>see {@link #cursor(CriteriaQuery)}
+     */
+    public <T> OrmCursor<T> cursor(Class<T> entityClass, Function<OrmCriteria<T>, CriteriaQuery<T>> func) {
+        return cursor(func.apply(OrmCriteria.of(em, entityClass)));
+    }
+
+    /**
+     * Open the forward-only cursor of entity in JPQL.
+     * <p>see {@link #cursor(CriteriaQuery)}
+     * <p>When you set Map in args, handle it as an argument with the names. (Map key is string only)
+     */
+    public <T> OrmCursor<T> cursor(final String qlString, final Object... args) {
+        Query query = bindArgs(em.createQuery(qlString), args);
+        metadata.ifPresent(meta -> meta.hints().forEach((k, v) -> query.setHint(k, v)));
+        return cursor(query);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> OrmCursor<T> cursor(final Query query) {
+        int fetchSize = metadata.flatMap(OrmQueryMetadata::fetchSize).orElse(DefaultFetchSize);
+        int clearSize = metadata.flatMap(OrmQueryMetadata::clearSize).orElse(fetchSize);
+        org.hibernate.query.Query<T> q = query.unwrap(org.hibernate.query.Query.class);
+        q.setFetchSize(fetchSize);
+        q.setReadOnly(true);
+        q.setCacheMode(CacheMode.IGNORE);
+        return new OrmCursor<>(em, q.scroll(ScrollMode.FORWARD_ONLY), clearSize);
+    }
+
     /** Relate a value with a query. */
     public Query bindArgs(final Query query, final Object... args) {
         return bindArgs(query, null, args);
@@ -1,7 +1,8 @@
 package sample.context.orm;
 
 import java.io.Serializable;
-import java.util.Optional;
+import java.time.Duration;
+import java.util.*;
 import java.util.function.Supplier;
 
 import org.springframework.transaction.PlatformTransactionManager;
@@ -19,7 +20,8 @@ import sample.context.lock.IdLockHandler.*;
  */
 public class TxTemplate {
     private Optional<IdLockHandler> idLock = Optional.empty();
-    private Optional<IdLockPair> IdLockPair = Optional.empty();
+    private List<IdLockPair> idLockPairs = Collections.emptyList();
+    private Optional<Duration> lockTimeout = Optional.empty();
     private final TransactionTemplate tmpl;
 
     public TxTemplate(PlatformTransactionManager txm) {
@@ -53,37 +55,54 @@ public class TxTemplate {
     public TxTemplate readIdLock(IdLockHandler idLock, Serializable id) {
         Assert.notNull(id, "id is required.");
         this.idLock = Optional.ofNullable(idLock);
-        this.IdLockPair = Optional.of(new IdLockPair(id, LockType.Read));
+        this.idLockPairs = Collections.singletonList(new IdLockPair(id, LockType.Read));
         return this;
     }
 
     public TxTemplate writeIdLock(IdLockHandler idLock, Serializable id) {
         Assert.notNull(id, "id is required.");
         this.idLock = Optional.ofNullable(idLock);
-        this.IdLockPair = Optional.of(new IdLockPair(id, LockType.Write));
+        this.idLockPairs = Collections.singletonList(new IdLockPair(id, LockType.Write));
+        return this;
+    }
+
+    /**
+     * Take the plural ID locks in the canonical order over the transaction.
+     * @see IdLockHandler#callAll(Collection, Supplier)
+     */
+    public TxTemplate idLocks(IdLockHandler idLock, Collection<IdLockPair> pairs) {
+        Assert.notEmpty(pairs, "pairs is required.");
+        this.idLock = Optional.ofNullable(idLock);
+        this.idLockPairs = new ArrayList<>(pairs);
+        return this;
+    }
+
+    /**
+     * Give up the ID lock when it cannot be acquired within the timeout.
+     * <p>In that case, ValidationException(ErrorKeys.IdLockTimeout) is thrown without starting the transaction.
+     */
+    public TxTemplate lockTimeout(Duration timeout) {
+        Assert.notNull(timeout, "timeout is required.");
+        this.lockTimeout = Optional.of(timeout);
         return this;
     }
 
     public void tx(Runnable runnable) {
-        if (this.idLock.isPresent()) {
-            this.idLock.get().call(this.IdLockPair.get().getId(), this.IdLockPair.get().getLockType(), () -> {
-                tmpl.execute(status -> {
-                    runnable.run();
-                    return null;
-                });
-            });
-        } else {
-            tmpl.execute(status -> {
-                runnable.run();
-                return null;
-            });
-        }
+        tx(() -> {
+            runnable.run();
+            return null;
+        });
     }
 
     public <T> T tx(Supplier<T> supplier) {
         if (this.idLock.isPresent()) {
-            return this.idLock.get().call(this.IdLockPair.get().getId(), this.IdLockPair.get().getLockType(),
-                    () -> tmpl.execute(status -> supplier.get()));
+            IdLockHandler handler = this.idLock.get();
+            Supplier<T> txSupplier = () -> tmpl.execute(status -> supplier.get());
+            if (this.lockTimeout.isPresent()) {
+                return handler.tryCallAll(this.idLockPairs, this.lockTimeout.get(), txSupplier);
+            } else {
+                return handler.callAll(this.idLockPairs, txSupplier);
+            }
         } else {
             return tmpl.execute(status -> supplier.get());
         }
@@ -0,0 +1,177 @@
+package sample.context.report;
+
+import java.util.*;
+
+import javax.inject.Singleton;
+import javax.validation.*;
+
+import org.springframework.transaction.PlatformTransactionManager;
+
+import io.micronaut.context.annotation.Value;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import sample.ValidationException;
+import sample.ValidationException.*;
+import sample.context.Dto;
+import sample.context.orm.*;
+import sample.context.report.csv.CsvReader;
+
+/**
+ * The batched import of the CSV rows.
+ * <p>The row is mapped to Dto and validated by Bean Validation, and the valid rows are processed
+ *  in the transaction per batch of "extension.report.import-batch" which is flushed and cleared at the end.
+ * The invalid row is collected into ImportResult as the error of the line instead of aborting the import.
+ * When the batch fails, the rows of the batch are processed again in the transaction per row
+ *  so that only the failed rows are counted as error.
+ * low: The errors over "extension.report.import-max-errors" are only counted.
+ */
+@Singleton
+@Slf4j
+public class ImportHandler {
+    public static final String KeyBatchSize = "extension.report.import-batch";
+    public static final String KeyBatchSizeEL = "${" + KeyBatchSize + ":1000}";
+    public static final String KeyMaxErrors = "extension.report.import-max-errors";
+    public static final String KeyMaxErrorsEL = "${" + KeyMaxErrors + ":1000}";
+
+    private final Validator validator;
+    private final int batchSize;
+    private final int maxErrors;
+
+    public ImportHandler(
+            ValidatorFactory validatorFactory,
+            @Value(KeyBatchSizeEL) int batchSize,
+            @Value(KeyMaxErrorsEL) int maxErrors) {
+        this.validator = validatorFactory.getValidator();
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /** Import the CSV rows. */
+    public <T extends Dto> ImportResult importCsv(
+            final CsvReader reader,
+            final OrmRepository rep,
+            final PlatformTransactionManager txm,
+            final ImportMapper<T> mapper,
+            final ImportRow<T> logic) {
+        ImportResult result = new ImportResult(maxErrors);
+        long start = System.currentTimeMillis();
+        List<ImportLine<T>> batch = new ArrayList<>(batchSize);
+        reader.read((lineNum, cols) -> {
+            result.total++;
+            map(lineNum, cols, mapper, result).ifPresent(row -> {
+                batch.add(new ImportLine<>(lineNum, row));
+                if (batchSize <= batch.size()) {
+                    process(batch, rep, txm, logic, result);
+                    batch.clear();
+                }
+            });
+        });
+        if (!batch.isEmpty()) {
+            process(batch, rep, txm, logic, result);
+        }
+        result.time = System.currentTimeMillis() - start;
+        log.info("Imported the CSV rows. [total: {}, success: {}, error: {}, time: {}ms, {} rows/s]",
+                result.total, result.success, result.error, result.time, result.rowsPerSecond());
+        return result;
+    }
+
+    private <T extends Dto> Optional<T> map(int lineNum, List<String> cols, final ImportMapper<T> mapper,
+            final ImportResult result) {
+        try {
+            T row = mapper.map(cols);
+            Set<ConstraintViolation<T>> violations = validator.validate(row);
+            if (violations.isEmpty()) {
+                return Optional.of(row);
+            }
+            Warns warns = Warns.init();
+            violations.forEach(v -> warns.add(propKey(v), v.getMessage()));
+            result.error(lineNum, warns.list());
+        } catch (ValidationException e) {
+            result.error(lineNum, e.list());
+        } catch (RuntimeException e) {
+            result.error(lineNum, Warns.init(ErrorKeys.Exception).list());
+        }
+        return Optional.empty();
+    }
+
+    private String propKey(ConstraintViolation<?> v) {
+        String key = v.getPropertyPath().toString();
+        return key.substring(key.lastIndexOf('.') + 1);
+    }
+
+    private <T extends Dto> void process(List<ImportLine<T>> batch, final OrmRepository rep,
+            final PlatformTransactionManager txm, final ImportRow<T> logic, final ImportResult result) {
+        try {
+            TxTemplate.of(txm).tx(() -> {
+                batch.forEach(line -> logic.execute(line.row));
+                rep.flushAndClear();
+            });
+            result.success += batch.size();
+        } catch (RuntimeException e) {
+            log.warn("The batch of the import failed, so the rows are processed one by one. [{}]", e.getMessage());
+            batch.forEach(line -> {
+                try {
+                    TxTemplate.of(txm).tx(() -> {
+                        logic.execute(line.row);
+                        rep.flushAndClear();
+                    });
+                    result.success++;
+                } catch (ValidationException ex) {
+                    result.error(line.lineNum, ex.list());
+                } catch (RuntimeException ex) {
+                    result.error(line.lineNum, Warns.init(ErrorKeys.Exception).list());
+                }
+            });
+        }
+    }
+
+    /** The result of the import. */
+    @Data
+    public static class ImportResult {
+        private final int maxErrors;
+        private int total;
+        private int success;
+        private int error;
+        private long time;
+        private List<ImportError> errors = new ArrayList<>();
+
+        public double rowsPerSecond() {
+            return time == 0 ? 0 : total * 1000.0 / time;
+        }
+
+        void error(int lineNum, List<Warn> warns) {
+            error++;
+            if (errors.size() < maxErrors) {
+                errors.add(new ImportError(lineNum, warns));
+            }
+        }
+    }
+
+    /** The error of the line. */
+    @lombok.Value
+    public static class ImportError {
+        private int lineNum;
+        private List<Warn> warns;
+    }
+
+    private static class ImportLine<T> {
+        private final int lineNum;
+        private final T row;
+
+        ImportLine(int lineNum, T row) {
+            this.lineNum = lineNum;
+            this.row = row;
+        }
+    }
+
+    /** Map the columns to Dto. (throw the exception when the column can not be converted) */
+    public static interface ImportMapper<T extends Dto> {
+        T map(final List<String> cols);
+    }
+
+    /** Process the valid row in the transaction of the batch. */
+    public static interface ImportRow<T extends Dto> {
+        void execute(final T row);
+    }
+
+}
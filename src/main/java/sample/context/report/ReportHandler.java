@@ -1,13 +1,25 @@
 package sample.context.report;
 
 import java.io.*;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.*;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Singleton;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micronaut.context.annotation.Value;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
 import sample.InvocationException;
+import sample.context.orm.OrmCursor;
 import sample.context.report.csv.*;
+import sample.context.report.csv.CsvPartWriter.CsvPart;
 import sample.context.report.csv.CsvReader.CsvReadLine;
-import sample.context.report.csv.CsvWriter.CsvWrite;
+import sample.context.report.csv.CsvWriter.*;
 
 /**
  * The report client / server components.
@@ -18,6 +30,40 @@ import sample.context.report.csv.CsvWriter.CsvWrite;
  */
 @Singleton
 public class ReportHandler {
+    public static final String KeyParallelism = "extension.report.parallelism";
+    /** 0 is the number of the available processors */
+    public static final String KeyParallelismEL = "${" + KeyParallelism + ":0}";
+    public static final String KeyExportDir = "extension.report.export-dir";
+    public static final String KeyExportDirEL = "${" + KeyExportDir + ":build/export}";
+    public static final String KeyExportMaxRows = "extension.report.export-max-rows";
+    /** 0 is unlimited */
+    public static final String KeyExportMaxRowsEL = "${" + KeyExportMaxRows + ":1000000}";
+    public static final String KeyExportMaxBytes = "extension.report.export-max-bytes";
+    /** 0 is unlimited */
+    public static final String KeyExportMaxBytesEL = "${" + KeyExportMaxBytes + ":0}";
+    public static final String KeyExportCompress = "extension.report.export-compress";
+    public static final String KeyExportCompressEL = "${" + KeyExportCompress + ":true}";
+
+    private static final int ExportBufferSize = 64 * 1024;
+
+    private final ForkJoinPool pool;
+    private final File exportDir;
+    private final long exportMaxRows;
+    private final long exportMaxBytes;
+    private final boolean exportCompress;
+
+    public ReportHandler(
+            @Value(KeyParallelismEL) int parallelism,
+            @Value(KeyExportDirEL) String exportDir,
+            @Value(KeyExportMaxRowsEL) long exportMaxRows,
+            @Value(KeyExportMaxBytesEL) long exportMaxBytes,
+            @Value(KeyExportCompressEL) boolean exportCompress) {
+        this.pool = new ForkJoinPool(0 < parallelism ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.exportDir = new File(exportDir);
+        this.exportMaxRows = exportMaxRows;
+        this.exportMaxBytes = exportMaxBytes;
+        this.exportCompress = exportCompress;
+    }
 
     /**
      * Make the form a byte array on memory.
@@ -53,6 +99,151 @@ public class ReportHandler {
         CsvReader.of(ins, layout).read(logic);
     }
 
+    /**
+     * Read CSV file which is mapped to memory and process line by line.
+     * <p>The heap usage does not depend on the file size. (it supports the file over 2GB)
+     */
+    public void readCsv(Path path, CsvReadLine logic) {
+        CsvReader.of(path).read(logic);
+    }
+
+    /**
+     * Read CSV file which is mapped to memory and process line by line.
+     * <p>The heap usage does not depend on the file size. (it supports the file over 2GB)
+     */
+    public void readCsv(Path path, CsvLayout layout, CsvReadLine logic) {
+        CsvReader.of(path, layout).read(logic);
+    }
+
+    /**
+     * Read CSV in parallel and process line by line.
+     * <p>When ordered is true, the rows are processed in original order on the caller thread.
+     * Otherwise, the rows are processed on the worker threads in no particular order. (the logic must be thread-safe)
+     * In both the orders, the line number is same as #readCsv.
+     */
+    public void readCsvParallel(byte[] data, CsvLayout layout, boolean ordered, CsvReadLine logic) {
+        read(CsvParallelReader.of(data, layout, pool), ordered, logic);
+    }
+
+    /**
+     * Read CSV file which is mapped to memory in parallel and process line by line.
+     * <p>When ordered is true, the rows are processed in original order on the caller thread.
+     * Otherwise, the rows are processed on the worker threads in no particular order. (the logic must be thread-safe)
+     * In both the orders, the line number is same as #readCsv.
+     */
+    public void readCsvParallel(Path path, CsvLayout layout, boolean ordered, CsvReadLine logic) {
+        read(CsvParallelReader.of(path, layout, pool), ordered, logic);
+    }
+
+    private void read(CsvParallelReader reader, boolean ordered, CsvReadLine logic) {
+        if (ordered) {
+            reader.readOrdered(logic);
+        } else {
+            reader.readUnordered(logic);
+        }
+    }
+
+    /**
+     * Export the rows of the query to the CSV stream.
+     * <p>The row is written as soon as it is fetched by the cursor of the query (see OrmTemplate#scroll),
+     *  so the memory does not depend on the number of the rows.
+     * Call it in the (read-only) transaction of the query.
+     * @return the number of the rows
+     */
+    public <T> long exportCsv(ExportQuery<T> query, ExportMapper<T> mapper, CsvLayout layout, OutputStream out) {
+        BufferedOutputStream bout = new BufferedOutputStream(out, ExportBufferSize);
+        long[] count = new long[1];
+        CsvWriter.of(bout, layout).write(stream -> {
+            count[0] = query.scroll(row -> stream.appendRow(mapper.map(row)));
+        });
+        try {
+            bout.flush();
+        } catch (IOException e) {
+            throw new InvocationException(e);
+        }
+        return count[0];
+    }
+
+    /**
+     * Stream the rows of the cursor as CSV in chunks.
+     * <p>The cursor is opened on subscribe and the rows are read by the chunk (64KB) on the demand of
+     *  the subscriber, so the memory is bounded by the chunk size and the first chunk is sent without
+     *  waiting for the whole rows. The cursor is closed on complete / error / cancel.
+     * The cursor is read on the I/O threads one chunk at a time, so use the cursor which is not bound to
+     *  the thread. (see OrmRepository#openCursor)
+     */
+    public <T> Flowable<byte[]> streamCsv(Supplier<OrmCursor<T>> cursor, ExportMapper<T> mapper, CsvLayout layout) {
+        return stream(cursor, out -> {
+            CsvStream stream = new CsvStream(layout, out);
+            return new ExportWriter<T>() {
+                @Override
+                public void write(T row) {
+                    stream.appendRow(mapper.map(row));
+                }
+
+                @Override
+                public void flush() {
+                    stream.flush();
+                }
+            };
+        });
+    }
+
+    /**
+     * Stream the rows of the cursor as NDJSON (the JSON of the row per line) in chunks.
+     * <p>see {@link #streamCsv(Supplier, ExportMapper, CsvLayout)}
+     */
+    public <T> Flowable<byte[]> streamNdjson(Supplier<OrmCursor<T>> cursor, ObjectMapper mapper) {
+        return stream(cursor, out -> row -> {
+            try {
+                out.write(mapper.writeValueAsBytes(row));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new InvocationException(e);
+            }
+        });
+    }
+
+    private <T> Flowable<byte[]> stream(Supplier<OrmCursor<T>> cursor, Function<OutputStream, ExportWriter<T>> writer) {
+        return Flowable.<byte[], ExportChunks<T>> generate(
+                () -> new ExportChunks<>(cursor.get(), writer),
+                (chunks, emitter) -> {
+                    byte[] chunk = chunks.next();
+                    if (chunk.length == 0) {
+                        emitter.onComplete();
+                    } else {
+                        emitter.onNext(chunk);
+                    }
+                },
+                ExportChunks::close)
+                .subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * Export the CSV part files of the name into "extension.report.export-dir".
+     * <p>The part is rotated by "extension.report.export-max-rows" / "extension.report.export-max-bytes",
+     *  and it is compressed by gzip when "extension.report.export-compress" is true. (see CsvPartWriter)
+     * @return the parts which are listed in the manifest
+     */
+    public List<CsvPart> writeCsvParts(String name, CsvLayout layout, CsvWrite logic) {
+        return writeCsvParts(name, layout, exportCompress, logic);
+    }
+
+    /**
+     * Export the CSV part files of the name into "extension.report.export-dir".
+     * <p>The parts are compressed by gzip when compress is true. (the archive etc.)
+     * @return the parts which are listed in the manifest
+     */
+    public List<CsvPart> writeCsvParts(String name, CsvLayout layout, boolean compress, CsvWrite logic) {
+        CsvPartWriter writer = CsvPartWriter.of(exportDir, name, layout)
+                .maxRows(exportMaxRows)
+                .maxBytes(exportMaxBytes);
+        if (compress) {
+            writer.compress();
+        }
+        return writer.write(logic);
+    }
+
     /** Export the CSV file. */
     public void writeCsv(File file, CsvWrite logic) {
         CsvWriter.of(file).write(logic);
@@ -73,8 +264,58 @@ public class ReportHandler {
         CsvWriter.of(out, layout).write(logic);
     }
 
+    @PreDestroy
+    public void close() {
+        pool.shutdown();
+    }
+
     public static interface ReportToByte {
         void execute(OutputStream out);
     }
 
+    /** The query which passes the rows to the consumer. (e.g. OrmTemplate#scroll) */
+    public static interface ExportQuery<T> {
+        long scroll(final Consumer<T> consumer);
+    }
+
+    /** Map the row to the CSV columns. */
+    public static interface ExportMapper<T> {
+        List<Object> map(final T row);
+    }
+
+    /** Write the row to the chunk. */
+    private static interface ExportWriter<T> {
+        void write(T row);
+
+        default void flush() {
+        }
+    }
+
+    /** The rows of the cursor which are written by the chunk. */
+    private static class ExportChunks<T> {
+        private final OrmCursor<T> cursor;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(ExportBufferSize);
+        private final ExportWriter<T> writer;
+
+        ExportChunks(OrmCursor<T> cursor, Function<OutputStream, ExportWriter<T>> writer) {
+            this.cursor = cursor;
+            this.writer = writer.apply(out);
+        }
+
+        /** Return the next chunk. (the empty chunk is the end) */
+        byte[] next() {
+            while (out.size() < ExportBufferSize && cursor.hasNext()) {
+                writer.write(cursor.next());
+            }
+            writer.flush();
+            byte[] chunk = out.toByteArray();
+            out.reset();
+            return chunk;
+        }
+
+        void close() {
+            cursor.close();
+        }
+    }
+
 }
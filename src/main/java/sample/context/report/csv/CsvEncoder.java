@@ -0,0 +1,215 @@
+package sample.context.report.csv;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.*;
+import java.nio.charset.*;
+import java.time.*;
+import java.util.List;
+
+/**
+ * The CSV writer which encodes the rows through the reusable buffers.
+ * <p>The columns are appended to the char buffer without the intermediate String,
+ *  and the char buffer is encoded by the reused CharsetEncoder into the byte buffer (64KB)
+ *  which is written to the stream when it is full. Call #flush at the end.
+ * The text of the column is same as CsvStream (Standard engine).
+ * The number and the date are written digit by digit in the text of #toString.
+ * low: The delimiter of the layout is used between the columns. (Standard engine always uses ',')
+ */
+final class CsvEncoder {
+    private static final int BufferSize = 64 * 1024;
+
+    private final OutputStream out;
+    private final CharsetEncoder encoder;
+    private final char delim;
+    private final char quote;
+    private final boolean nonQuote;
+    private final String eol;
+    private final CharBuffer chars;
+    private final ByteBuffer bytes;
+
+    CsvEncoder(final CsvLayout layout, final OutputStream out) {
+        this(layout, out, BufferSize);
+    }
+
+    CsvEncoder(final CsvLayout layout, final OutputStream out, int bufferSize) {
+        this.out = out;
+        this.encoder = Charset.forName(layout.getCharset()).newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.delim = layout.getDelim();
+        this.quote = layout.getQuote();
+        this.nonQuote = layout.isNonQuote();
+        this.eol = layout.getEolSymbols();
+        this.chars = CharBuffer.allocate(Math.max(16, bufferSize / 4));
+        this.bytes = ByteBuffer.allocate(Math.max(16, bufferSize));
+    }
+
+    /** Append the row. */
+    public void appendRow(final List<Object> cols) {
+        for (int i = 0, n = cols.size(); i < n; i++) {
+            if (0 < i) {
+                put(delim);
+            }
+            appendColumn(cols.get(i));
+        }
+        put(eol);
+    }
+
+    private void appendColumn(final Object col) {
+        if (col == null) {
+            return;
+        } else if (col instanceof String) {
+            appendText((String) col);
+        } else if (col instanceof Integer || col instanceof Long || col instanceof Short || col instanceof Byte) {
+            putLong(((Number) col).longValue());
+        } else if (col instanceof BigDecimal) {
+            put(col.toString()); // BigDecimal caches the string
+        } else if (col instanceof LocalDate) {
+            putDate((LocalDate) col);
+        } else if (col instanceof LocalDateTime) {
+            putDateTime((LocalDateTime) col);
+        } else {
+            put(col.toString());
+        }
+    }
+
+    /** Append the text which is escaped like CsvStream#escape. */
+    private void appendText(final String s) {
+        if (nonQuote) {
+            put(s);
+            return;
+        }
+        boolean escape = (0 <= s.indexOf(delim) && 0 <= s.indexOf(quote)) || 0 <= s.indexOf(eol);
+        put(quote);
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            put(c);
+            if (escape && c == quote) {
+                put(c);
+            }
+        }
+        put(quote);
+    }
+
+    private void putLong(long v) {
+        if (v == Long.MIN_VALUE) {
+            put(Long.toString(v));
+            return;
+        }
+        if (v < 0) {
+            put('-');
+            v = -v;
+        }
+        long div = 1;
+        while (div <= v / 10) {
+            div *= 10;
+        }
+        for (; 0 < div; div /= 10) {
+            put((char) ('0' + (v / div) % 10));
+        }
+    }
+
+    /** Same as LocalDate#toString. */
+    private void putDate(final LocalDate v) {
+        int year = v.getYear();
+        if (year < 0 || 9999 < year) {
+            put(v.toString());
+            return;
+        }
+        putDigits(year, 4);
+        put('-');
+        putDigits(v.getMonthValue(), 2);
+        put('-');
+        putDigits(v.getDayOfMonth(), 2);
+    }
+
+    /** Same as LocalDateTime#toString. */
+    private void putDateTime(final LocalDateTime v) {
+        int year = v.getYear();
+        if (year < 0 || 9999 < year) {
+            put(v.toString());
+            return;
+        }
+        putDate(v.toLocalDate());
+        put('T');
+        putDigits(v.getHour(), 2);
+        put(':');
+        putDigits(v.getMinute(), 2);
+        int second = v.getSecond();
+        int nano = v.getNano();
+        if (0 < second || 0 < nano) {
+            put(':');
+            putDigits(second, 2);
+            if (0 < nano) {
+                put('.');
+                if (nano % 1000_000 == 0) {
+                    putDigits(nano / 1000_000, 3);
+                } else if (nano % 1000 == 0) {
+                    putDigits(nano / 1000, 6);
+                } else {
+                    putDigits(nano, 9);
+                }
+            }
+        }
+    }
+
+    private void putDigits(int v, int width) {
+        for (int div = pow10(width - 1); 0 < div; div /= 10) {
+            put((char) ('0' + (v / div) % 10));
+        }
+    }
+
+    private int pow10(int n) {
+        int v = 1;
+        for (int i = 0; i < n; i++) {
+            v *= 10;
+        }
+        return v;
+    }
+
+    private void put(final String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            put(s.charAt(i));
+        }
+    }
+
+    private void put(char c) {
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put(c);
+    }
+
+    /**
+     * Encode the char buffer to the byte buffer.
+     * <p>The high surrogate at the end is kept until the next char when endOfInput is false.
+     */
+    private void encode(boolean endOfInput) {
+        chars.flip();
+        while (encoder.encode(chars, bytes, endOfInput).isOverflow()) {
+            drain();
+        }
+        chars.compact();
+    }
+
+    private void drain() {
+        try {
+            out.write(bytes.array(), bytes.arrayOffset(), bytes.position());
+            bytes.clear();
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /** Write the appended rows to the stream. (the stream itself is not flushed) */
+    public void flush() {
+        encode(true);
+        while (encoder.flush(bytes).isOverflow()) {
+            drain();
+        }
+        encoder.reset();
+        drain();
+    }
+
+}
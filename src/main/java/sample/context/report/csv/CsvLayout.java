@@ -21,6 +21,8 @@ public class CsvLayout {
     private String header = null;
     /** character encoding */
     private String charset = "UTF-8";
+    /** engine of CsvReader / CsvWriter */
+    private CsvEngine engine = CsvEngine.Standard;
 
     public boolean hasHeader() {
         return header != null;
@@ -34,4 +36,12 @@ public class CsvLayout {
         return list;
     }
 
+    /** The engine of CsvReader / CsvWriter. */
+    public static enum CsvEngine {
+        /** read a code point at a time / write a row string at a time */
+        Standard,
+        /** scan the char buffer by the state machine (see CsvScanner) / encode through the buffers (see CsvEncoder) */
+        Buffered;
+    }
+
 }
@@ -0,0 +1,196 @@
+package sample.context.report.csv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import lombok.Value;
+import sample.InvocationException;
+import sample.context.report.csv.CsvReader.CsvReadLine;
+import sample.context.report.csv.CsvScanner.ByteWindows;
+import sample.context.report.csv.CsvScanner.RowQuote;
+
+/**
+ * This utility supports CSV loading processing in parallel.
+ * <p>The input is split into the chunks at the EOL out of the quote which is found by the pre-scan of the bytes,
+ *  and the chunks are parsed by CsvScanner on ForkJoinPool.
+ * The line number is decided by the pre-scan, so it is same as CsvReader in both the orders.
+ * <p>The split requires that the quote and EOL are the single byte under 0x40 in the charset.
+ * (it is not used as the trail byte in UTF-8 / Shift_JIS / EUC-JP etc.)
+ * Otherwise, the input is read as one chunk.
+ */
+public class CsvParallelReader {
+    private static final long MinChunkSize = 1024 * 1024;
+    private static final long MaxChunkSize = 64 * 1024 * 1024;
+    private static final long ScanWindowSize = 64 * 1024 * 1024;
+
+    private final byte[] data;
+    private final Path path;
+    private final CsvLayout layout;
+    private final ForkJoinPool pool;
+
+    private CsvParallelReader(byte[] data, Path path, CsvLayout layout, ForkJoinPool pool) {
+        this.data = data;
+        this.path = path;
+        this.layout = layout;
+        this.pool = pool;
+    }
+
+    /**
+     * Perform CSV loading processing in original order.
+     * <p>The rows are passed to the logic on the caller thread.
+     * The parsed chunks are held up to twice the parallelism while the earlier chunk is being processed.
+     */
+    public void readOrdered(final CsvReadLine logic) {
+        open((source, size) -> {
+            Deque<ForkJoinTask<List<Row>>> running = new ArrayDeque<>();
+            for (Chunk chunk : split(source, size)) {
+                if (pool.getParallelism() * 2 <= running.size()) {
+                    running.poll().join().forEach(row -> logic.execute(row.getLineNum(), row.getCols()));
+                }
+                running.add(pool.submit(() -> {
+                    List<Row> rows = new ArrayList<>();
+                    parse(source, chunk, (lineNum, cols) -> rows.add(new Row(lineNum, cols)));
+                    return rows;
+                }));
+            }
+            while (!running.isEmpty()) {
+                running.poll().join().forEach(row -> logic.execute(row.getLineNum(), row.getCols()));
+            }
+        });
+    }
+
+    /**
+     * Perform CSV loading processing in no particular order.
+     * <p>The rows are passed to the logic on the worker threads, so the logic must be thread-safe.
+     */
+    public void readUnordered(final CsvReadLine logic) {
+        open((source, size) -> {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (Chunk chunk : split(source, size)) {
+                tasks.add(pool.submit(() -> parse(source, chunk, logic)));
+            }
+            tasks.forEach(ForkJoinTask::join);
+        });
+    }
+
+    private void open(final ReadSource logic) {
+        if (path == null) {
+            logic.execute(ByteWindows.of(data), data.length);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            logic.execute(ByteWindows.of(channel), channel.size());
+        } catch (IOException e) {
+            throw new InvocationException("An exception occurred during resource processing", e);
+        }
+    }
+
+    private void parse(final ByteWindows source, final Chunk chunk, final CsvReadLine logic) {
+        try {
+            new CsvScanner(layout).continueFrom(chunk.getLineNum())
+                    .read(source, chunk.getStart(), chunk.getEnd(), Charset.forName(layout.getCharset()), logic);
+        } catch (IOException e) {
+            throw new InvocationException("An exception occurred during resource processing", e);
+        }
+    }
+
+    /** Split the input at the EOL out of the quote. */
+    List<Chunk> split(final ByteWindows source, long size) {
+        List<Chunk> chunks = new ArrayList<>();
+        Charset charset = Charset.forName(layout.getCharset());
+        Optional<Byte> quote = layout.isNonQuote() ? Optional.empty() : singleByte(charset, layout.getQuote());
+        byte[] eol = new byte[layout.getEolSymbols().length()];
+        for (int i = 0; i < eol.length; i++) {
+            Optional<Byte> b = singleByte(charset, layout.getEolSymbols().charAt(i));
+            if (!b.isPresent()) {
+                return Arrays.asList(new Chunk(0, size, 0));
+            }
+            eol[i] = b.get();
+        }
+        if (!layout.isNonQuote() && !quote.isPresent()) {
+            return Arrays.asList(new Chunk(0, size, 0));
+        }
+        long chunkSize = Math.max(MinChunkSize, Math.min(MaxChunkSize, size / (pool.getParallelism() * 4)));
+        byte q = quote.orElse((byte) 0);
+        RowQuote rowQuote = new RowQuote();
+        long start = 0;
+        int startLine = 0;
+        int lines = 0;
+        int matched = 0;
+        try {
+            for (long position = 0; position < size; position += ScanWindowSize) {
+                ByteBuffer bytes = source.map(position, Math.min(ScanWindowSize, size - position));
+                for (int i = 0, n = bytes.limit(); i < n; i++) {
+                    byte b = bytes.get(i);
+                    boolean quoted = quote.isPresent() && b == q;
+                    rowQuote.accept(quoted);
+                    if (quoted) {
+                        matched = 0;
+                        continue;
+                    }
+                    matched = b == eol[matched] ? matched + 1 : (b == eol[0] ? 1 : 0);
+                    if (matched == eol.length) {
+                        matched = 0;
+                        if (rowQuote.isQuoted()) {
+                            continue;
+                        }
+                        lines++;
+                        long end = position + i + 1;
+                        if (chunkSize <= end - start) {
+                            chunks.add(new Chunk(start, end, startLine));
+                            start = end;
+                            startLine = lines;
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new InvocationException("An exception occurred during resource processing", e);
+        }
+        if (start < size || chunks.isEmpty()) {
+            chunks.add(new Chunk(start, size, startLine));
+        }
+        return chunks;
+    }
+
+    private Optional<Byte> singleByte(Charset charset, char c) {
+        byte[] v = String.valueOf(c).getBytes(charset);
+        return v.length == 1 && 0 <= v[0] && v[0] < 0x40 ? Optional.of(v[0]) : Optional.empty();
+    }
+
+    public static CsvParallelReader of(byte[] data, CsvLayout layout, ForkJoinPool pool) {
+        return new CsvParallelReader(data, null, layout, pool);
+    }
+
+    /**
+     * Return the reader of the file which is mapped to memory.
+     * <p>The file must not be changed until the reading is finished.
+     */
+    public static CsvParallelReader of(Path path, CsvLayout layout, ForkJoinPool pool) {
+        return new CsvParallelReader(null, path, layout, pool);
+    }
+
+    private static interface ReadSource {
+        void execute(final ByteWindows source, long size);
+    }
+
+    /** The byte range [start, end) of the rows which starts from the next of lineNum. */
+    @Value
+    static class Chunk {
+        private long start;
+        private long end;
+        private int lineNum;
+    }
+
+    @Value
+    private static class Row {
+        private int lineNum;
+        private List<String> cols;
+    }
+
+}
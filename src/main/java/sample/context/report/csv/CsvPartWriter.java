@@ -0,0 +1,200 @@
+package sample.context.report.csv;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import lombok.Value;
+import sample.InvocationException;
+import sample.context.report.csv.CsvWriter.*;
+
+/**
+ * A utility that supports CSV export processing into the part files.
+ * <p>The rows are written into "name-00001.csv", "name-00002.csv" ... in the directory,
+ *  and the next part is started when the part reaches #maxRows or #maxBytes. (0 is unlimited)
+ * Every part has the header of the layout, so the parts can be read independently.
+ * When #compress is set, the parts are compressed by gzip. ("name-00001.csv.gz")
+ * The manifest "name.manifest.csv" lists the parts with the rows and the file size.
+ * <p>The bytes of #maxBytes is the bytes of CSV before the compression.
+ * low: The part is checked before the row, so it exceeds maxBytes by the last row.
+ *  (Buffered engine counts the bytes by the buffer of CsvEncoder)
+ */
+public class CsvPartWriter {
+    private static final int BufferSize = 64 * 1024;
+
+    private final File dir;
+    private final String name;
+    private final CsvLayout layout;
+    private long maxRows;
+    private long maxBytes;
+    private Optional<Integer> compressLevel = Optional.empty();
+
+    private CsvPartWriter(File dir, String name, CsvLayout layout) {
+        this.dir = dir;
+        this.name = name;
+        this.layout = layout;
+    }
+
+    /** Start the next part when the part has the rows. */
+    public CsvPartWriter maxRows(long maxRows) {
+        this.maxRows = maxRows;
+        return this;
+    }
+
+    /** Start the next part when the part has the bytes. */
+    public CsvPartWriter maxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    /** Compress the parts by gzip. */
+    public CsvPartWriter compress() {
+        return compress(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /** Compress the parts by gzip of the level. (Deflater#setLevel) */
+    public CsvPartWriter compress(int level) {
+        this.compressLevel = Optional.of(level);
+        return this;
+    }
+
+    /**
+     * CSV export processing (overwriting) is performed.
+     * @return the parts which are listed in the manifest
+     */
+    public List<CsvPart> write(final CsvWrite logic) {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new InvocationException("Failed to create the directory. [" + dir + "]");
+        }
+        List<CsvPart> parts = new ArrayList<>();
+        PartStream stream = new PartStream(parts, openPart(1));
+        try {
+            logic.execute(stream);
+            stream.finish();
+        } catch (RuntimeException e) {
+            stream.current.closeQuietly();
+            throw e;
+        }
+        writeManifest(parts);
+        return parts;
+    }
+
+    private PartOutput openPart(int index) {
+        String suffix = compressLevel.isPresent() ? ".csv.gz" : ".csv";
+        File file = new File(dir, String.format("%s-%05d%s", name, index, suffix));
+        try {
+            return new PartOutput(file);
+        } catch (IOException e) {
+            throw new InvocationException(e);
+        }
+    }
+
+    private void writeManifest(final List<CsvPart> parts) {
+        CsvLayout manifest = new CsvLayout();
+        manifest.setHeader("file,rows,bytes");
+        CsvWriter.of(new File(dir, name + ".manifest.csv"), manifest).write(stream -> {
+            parts.forEach(part -> stream.appendRow(Arrays.asList(part.getFile(), part.getRows(), part.getBytes())));
+        });
+    }
+
+    public static CsvPartWriter of(File dir, String name) {
+        return new CsvPartWriter(dir, name, new CsvLayout());
+    }
+
+    public static CsvPartWriter of(File dir, String name, CsvLayout layout) {
+        return new CsvPartWriter(dir, name, layout);
+    }
+
+    /** The part file. (bytes is the file size) */
+    @Value
+    public static class CsvPart {
+        private String file;
+        private long rows;
+        private long bytes;
+    }
+
+    private class PartStream extends CsvStream {
+        private final List<CsvPart> parts;
+        private PartOutput current;
+
+        PartStream(List<CsvPart> parts, PartOutput first) {
+            super(layout, first.out);
+            this.parts = parts;
+            this.current = first;
+        }
+
+        @Override
+        public CsvStream appendRow(List<Object> cols) {
+            if (current.full()) {
+                finish();
+                current = openPart(parts.size() + 1);
+                open(current.out);
+            }
+            super.appendRow(cols);
+            current.rows++;
+            return this;
+        }
+
+        void finish() {
+            flush();
+            parts.add(current.close());
+        }
+    }
+
+    private class PartOutput {
+        private final File file;
+        private final OutputStream fout;
+        private final OutputStream out;
+        private long bytes;
+        private long rows;
+
+        PartOutput(File file) throws IOException {
+            this.file = file;
+            OutputStream bout = new BufferedOutputStream(new FileOutputStream(file, false), BufferSize);
+            if (compressLevel.isPresent()) {
+                int level = compressLevel.get();
+                this.fout = new GZIPOutputStream(bout, BufferSize) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+            } else {
+                this.fout = bout;
+            }
+            this.out = new FilterOutputStream(fout) {
+                @Override
+                public void write(int b) throws IOException {
+                    fout.write(b);
+                    bytes++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    fout.write(b, off, len);
+                    bytes += len;
+                }
+            };
+        }
+
+        boolean full() {
+            return (0 < maxRows && maxRows <= rows) || (0 < maxBytes && maxBytes <= bytes);
+        }
+
+        CsvPart close() {
+            try {
+                fout.close();
+            } catch (IOException e) {
+                throw new InvocationException(e);
+            }
+            return new CsvPart(file.getName(), rows, file.length());
+        }
+
+        void closeQuietly() {
+            try {
+                fout.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+}
@@ -1,14 +1,19 @@
 package sample.context.report.csv;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.*;
 import java.util.*;
 
 import io.micronaut.core.util.StringUtils;
 import lombok.*;
 import sample.InvocationException;
+import sample.context.report.csv.CsvLayout.CsvEngine;
 
 /**
  * This utility supports CSV loading processing.
+ * <p>When CsvLayout#engine is Buffered, the rows are parsed by CsvScanner.
  */
 @Data
 @AllArgsConstructor
@@ -16,6 +21,7 @@ public class CsvReader {
 
     private byte[] data;
     private InputStream ins;
+    private Path path;
     private CsvLayout layout = new CsvLayout();
 
     /** true when reading via binary resource */
@@ -23,8 +29,21 @@ public class CsvReader {
         return data != null;
     }
 
-    /** Perform CSV loading processing.*/
+    /** true when reading via file (memory-mapped file when CsvLayout#engine is Buffered) */
+    public boolean fromPath() {
+        return path != null;
+    }
+
+    /**
+     * Perform CSV loading processing.
+     * <p>The file of #fromPath() is mapped to memory and parsed by CsvScanner when CsvLayout#engine is Buffered,
+     *  otherwise it is read as the stream.
+     */
     public void read(final CsvReadLine logic) {
+        if (fromPath()) {
+            readPath(logic);
+            return;
+        }
         InputStream ins = null;
         try {
             ins = fromBinary() ? new ByteArrayInputStream(data) : this.ins;
@@ -40,6 +59,24 @@ public class CsvReader {
         }
     }
     
+    private void readPath(final CsvReadLine logic) {
+        if (layout.getEngine() != CsvEngine.Buffered) {
+            try (InputStream in = Files.newInputStream(path)) {
+                readStream(in, logic);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new InvocationException("An exception occurred during resource processing", e);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            new CsvScanner(layout).read(channel, Charset.forName(layout.getCharset()), logic);
+        } catch (IOException e) {
+            throw new InvocationException("An exception occurred during resource processing", e);
+        }
+    }
+
     private void closeQuietly(final Closeable closeable) {
         try {
             if (closeable != null) {
@@ -51,6 +88,15 @@ public class CsvReader {
 
     /** Perform CSV loading processing.*/
     public void readStream(final InputStream in, final CsvReadLine logic) throws Exception {
+        if (layout.getEngine() == CsvEngine.Buffered) {
+            Reader reader = new InputStreamReader(in, layout.getCharset());
+            try {
+                new CsvScanner(layout).read(reader, logic);
+            } finally {
+                closeQuietly(reader);
+            }
+            return;
+        }
         PushbackReader reader = new PushbackReader(new InputStreamReader(in, layout.getCharset()), 2);
         try {
             int lineNum = 0;
@@ -149,6 +195,9 @@ public class CsvReader {
 
     /** it parses the CSV string and returns a column list */
     public List<String> parseRow(String row) {
+        if (layout.getEngine() == CsvEngine.Buffered) {
+            return new CsvScanner(layout).parseRow(row);
+        }
         int pdelim = String.valueOf(layout.getDelim()).codePointAt(0);
         int pquote = String.valueOf(layout.getQuote()).codePointAt(0);
         List<String> columns = new ArrayList<>();
@@ -231,19 +280,27 @@ public class CsvReader {
     }
     
     public static CsvReader of(byte[] data) {
-        return new CsvReader(data, null, new CsvLayout());
+        return new CsvReader(data, null, null, new CsvLayout());
     }
 
     public static CsvReader of(byte[] data, CsvLayout layout) {
-        return new CsvReader(data, null, layout);
+        return new CsvReader(data, null, null, layout);
     }
 
     public static CsvReader of(InputStream ins) {
-        return new CsvReader(null, ins, new CsvLayout());
+        return new CsvReader(null, ins, null, new CsvLayout());
     }
 
     public static CsvReader of(InputStream ins, CsvLayout layout) {
-        return new CsvReader(null, ins, layout);
+        return new CsvReader(null, ins, null, layout);
+    }
+
+    public static CsvReader of(Path path) {
+        return new CsvReader(null, null, path, new CsvLayout());
+    }
+
+    public static CsvReader of(Path path, CsvLayout layout) {
+        return new CsvReader(null, null, path, layout);
     }
 
     /**
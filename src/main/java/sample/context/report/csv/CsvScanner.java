@@ -0,0 +1,333 @@
+package sample.context.report.csv;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.*;
+import java.util.*;
+
+import io.micronaut.core.util.StringUtils;
+import sample.context.report.csv.CsvReader.CsvReadLine;
+
+/**
+ * The CSV parser which scans the char buffer by the state machine.
+ * <p>The column is collected into the reusable char array and it is unescaped in place,
+ *  so a column value is the only String which is created.
+ * The quoting / escape / unescape follows CsvReader (Standard engine).
+ * <p>The row and the column track the quote separately as the Standard engine does.
+ * The quote sequence which has the odd length closes the quote of the column,
+ *  but the quote of the row is closed only by the single quote. (e.g. the EOL after '"""' is in the row)
+ */
+final class CsvScanner {
+    private static final int BufferSize = 8192;
+    private static final long MapWindowSize = 64 * 1024 * 1024;
+
+    private final char delim;
+    private final char quote;
+    private final boolean nonQuote;
+    private final char[] eol;
+    private final boolean header;
+    private final long mapWindowSize;
+
+    private char[] column = new char[64];
+    private int len;
+    private QuoteState state = QuoteState.Unquoted;
+    private final RowQuote rowQuote = new RowQuote();
+    private List<String> row = new ArrayList<>();
+    private boolean dirty;
+    private char high;
+    private int lineNum;
+    private boolean title;
+
+    CsvScanner(final CsvLayout layout) {
+        this(layout, MapWindowSize);
+    }
+
+    CsvScanner(final CsvLayout layout, long mapWindowSize) {
+        this.delim = layout.getDelim();
+        this.quote = layout.getQuote();
+        this.nonQuote = layout.isNonQuote();
+        this.eol = layout.getEolSymbols().toCharArray();
+        this.header = StringUtils.isNotEmpty(layout.getHeader());
+        this.mapWindowSize = mapWindowSize;
+    }
+
+    /** Read all the rows of the reader. */
+    public void read(final Reader reader, final CsvReadLine logic) throws IOException {
+        char[] buf = new char[BufferSize];
+        int n;
+        while ((n = reader.read(buf)) != -1) {
+            scan(buf, 0, n, logic);
+        }
+        finish(logic);
+    }
+
+    /**
+     * Read all the rows of the file which is mapped to memory.
+     * <p>The file is mapped and decoded in every window (64MB), so the heap usage does not depend on
+     *  the file size. (the char which spans the windows is decoded in the next window)
+     * low: The mapped window is released by GC. (there is no explicit unmap in Java 8)
+     */
+    public void read(final FileChannel channel, Charset charset, final CsvReadLine logic) throws IOException {
+        read(ByteWindows.of(channel), 0, channel.size(), charset, logic);
+    }
+
+    /** Read all the rows of the byte range [start, end) of the source. */
+    public void read(final ByteWindows source, long start, long end, Charset charset, final CsvReadLine logic)
+            throws IOException {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(BufferSize);
+        long position = start;
+        do {
+            long windowSize = Math.min(mapWindowSize, end - position);
+            boolean last = position + windowSize == end;
+            ByteBuffer bytes = source.map(position, windowSize);
+            CoderResult result;
+            do {
+                result = decoder.decode(bytes, chars, last);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                scan(chars, logic);
+            } while (result.isOverflow());
+            position += bytes.position();
+        } while (position < end);
+        while (decoder.flush(chars).isOverflow()) {
+            scan(chars, logic);
+        }
+        scan(chars, logic);
+        finish(logic);
+    }
+
+    /**
+     * Continue the line number from the previous rows.
+     * <p>It is used to read the chunk which does not contain the first row. (the header is not skipped)
+     */
+    CsvScanner continueFrom(int lineNum) {
+        this.lineNum = lineNum;
+        this.title = header;
+        return this;
+    }
+
+    private void scan(final CharBuffer chars, final CsvReadLine logic) throws IOException {
+        chars.flip();
+        scan(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining(), logic);
+        chars.clear();
+    }
+
+    private void scan(final char[] buf, int offset, int length, final CsvReadLine logic) throws IOException {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            char c = buf[i];
+            if (high != 0) {
+                if (!Character.isLowSurrogate(c)) {
+                    throw surrogateError(high, c);
+                }
+                high = 0;
+            } else if (Character.isHighSurrogate(c)) {
+                high = c;
+            }
+            if (accept(c, true)) {
+                execute(logic);
+                nextRow();
+            }
+        }
+    }
+
+    private void finish(final CsvReadLine logic) throws IOException {
+        if (high != 0) {
+            throw surrogateError(high, (char) -1);
+        }
+        if (dirty) {
+            if (endsWithEol()) {
+                len -= eol.length;
+            }
+            endColumn();
+            execute(logic);
+        }
+    }
+
+    private void execute(final CsvReadLine logic) {
+        lineNum++;
+        if (lineNum == 1 && header) {
+            title = true; // Skip the first line when header definition exists
+        } else {
+            logic.execute(title ? lineNum - 1 : lineNum, row);
+        }
+    }
+
+    private IOException surrogateError(char high, char low) {
+        return new IOException("detected unexpected surrogate pairs. [" + String.valueOf(high) + ", "
+                + String.valueOf(low) + "]");
+    }
+
+    /** Parse the row string which does not contain EOL and return a column list. */
+    public List<String> parseRow(String value) {
+        for (int i = 0, n = value.length(); i < n; i++) {
+            accept(value.charAt(i), false);
+        }
+        endColumn();
+        List<String> ret = row;
+        nextRow();
+        return ret;
+    }
+
+    /**
+     * Accept the next char.
+     * @return true when the row is completed by EOL.
+     */
+    private boolean accept(char c, boolean detectEol) {
+        dirty = true;
+        boolean quoted = c == quote && !nonQuote;
+        rowQuote.accept(quoted);
+        if (quoted) {
+            state = state.next();
+            append(c);
+            return false;
+        }
+        if (state != QuoteState.Quoted) {
+            state = QuoteState.Unquoted;
+            if (c == delim) {
+                endColumn();
+                return false;
+            }
+        }
+        append(c);
+        if (detectEol && !rowQuote.isQuoted() && c == eol[eol.length - 1] && endsWithEol()) {
+            len -= eol.length;
+            endColumn();
+            return true;
+        }
+        return false;
+    }
+
+    private void append(char c) {
+        if (len == column.length) {
+            column = Arrays.copyOf(column, len * 2);
+        }
+        column[len++] = c;
+    }
+
+    private boolean endsWithEol() {
+        if (len < eol.length) {
+            return false;
+        }
+        for (int i = 0, offset = len - eol.length; i < eol.length; i++) {
+            if (column[offset + i] != eol[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void endColumn() {
+        row.add(unescape());
+        len = 0;
+        state = QuoteState.Unquoted;
+    }
+
+    private void nextRow() {
+        row = new ArrayList<>(row.size());
+        len = 0;
+        state = QuoteState.Unquoted;
+        rowQuote.reset();
+        dirty = false;
+    }
+
+    /** Unescape the column in place. (same as CsvReader#unescape) */
+    private String unescape() {
+        if (len < 2 || nonQuote || column[0] != quote || column[len - 1] != quote) {
+            return new String(column, 0, len);
+        }
+        int end = len - 1;
+        boolean escaped = false;
+        for (int i = 1; i < end && !escaped; i++) {
+            char c = column[i];
+            escaped = c == delim || c == quote || isEolSymbol(c);
+        }
+        if (!escaped) {
+            return new String(column, 1, len - 2);
+        }
+        int m = 0;
+        for (int i = 1; i < end; i++) {
+            column[m++] = column[i];
+            if (column[i] == quote && i + 1 < end && column[i + 1] == quote) {
+                i++;
+            }
+        }
+        if (2 <= m && column[0] == quote && column[m - 1] == quote) {
+            return new String(column, 1, m - 2);
+        }
+        return new String(column, 0, m);
+    }
+
+    private boolean isEolSymbol(char c) {
+        for (char v : eol) {
+            if (v == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The source which returns the window of the byte range. */
+    static interface ByteWindows {
+        ByteBuffer map(long position, long size) throws IOException;
+
+        static ByteWindows of(final FileChannel channel) {
+            return (position, size) -> channel.map(MapMode.READ_ONLY, position, size);
+        }
+
+        static ByteWindows of(final byte[] data) {
+            return (position, size) -> ByteBuffer.wrap(data, (int) position, (int) size).slice();
+        }
+    }
+
+    /**
+     * The quote state of the row which decides the EOL out of the quote. (same as CsvReader#readStreamLine)
+     * <p>The quote opens the row, and the quote sequence in the quote closes it only when its length is 1.
+     */
+    static final class RowQuote {
+        private boolean quoted;
+        private int run;
+
+        void accept(boolean quote) {
+            if (quote) {
+                if (0 < run || quoted) {
+                    run++;
+                } else {
+                    quoted = true;
+                }
+            } else if (0 < run) {
+                quoted = run != 1;
+                run = 0;
+            }
+        }
+
+        boolean isQuoted() {
+            return quoted;
+        }
+
+        void reset() {
+            quoted = false;
+            run = 0;
+        }
+    }
+
+    /**
+     * The quote state of the column.
+     * <p>QuoteEnd is the odd length of the quote sequence in the quote. (it is closed unless the next is the quote)
+     */
+    private static enum QuoteState {
+        Unquoted,
+        Quoted,
+        QuoteEnd;
+
+        QuoteState next() {
+            return this == Quoted ? QuoteEnd : Quoted;
+        }
+    }
+
+}
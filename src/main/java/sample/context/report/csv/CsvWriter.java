@@ -5,9 +5,11 @@ import java.util.*;
 
 import lombok.*;
 import sample.InvocationException;
+import sample.context.report.csv.CsvLayout.CsvEngine;
 
 /**
  * A utility that supports CSV export processing.
+ * <p>When CsvLayout#engine is Buffered, the rows are written by CsvEncoder.
  */
 @Data
 @AllArgsConstructor
@@ -42,9 +44,10 @@ public class CsvWriter {
     public void write(final CsvWrite logic) {
         OutputStream out = null;
         try {
-            out = fromFile() ? new FileOutputStream(file, false) : this.out;
+            out = fromFile() ? new BufferedOutputStream(new FileOutputStream(file, false)) : this.out;
             CsvStream stream = new CsvStream(layout, out);
             logic.execute(stream);
+            stream.flush();
         } catch (RuntimeException e) {
             throw e;
         } catch (Exception e) {
@@ -72,11 +75,12 @@ public class CsvWriter {
     public void writeAppend(final CsvWrite logic) {
         if (!fromFile())
             throw new UnsupportedOperationException("Additional export is supported only when outputting files");
-        FileOutputStream out = null;
+        OutputStream out = null;
         try {
-            out = new FileOutputStream(file, true);
+            out = new BufferedOutputStream(new FileOutputStream(file, true));
             CsvStream stream = new CsvStream(layout, out);
             logic.execute(stream);
+            stream.flush();
         } catch (RuntimeException e) {
             throw e;
         } catch (Exception e) {
@@ -89,20 +93,40 @@ public class CsvWriter {
     public static class CsvStream {
         private CsvLayout layout;
         private OutputStream out;
+        private Optional<CsvEncoder> encoder;
 
         public CsvStream(CsvLayout layout, OutputStream out) {
             this.layout = layout;
+            open(out);
+        }
+
+        /**
+         * Start writing to the stream. (the header is written)
+         * <p>Call #flush before switching the stream.
+         */
+        protected void open(OutputStream out) {
             this.out = out;
+            this.encoder = layout.getEngine() == CsvEngine.Buffered
+                    ? Optional.of(new CsvEncoder(layout, out))
+                    : Optional.empty();
             if (layout.hasHeader()) {
-                appendRow(layout.headerCols());
+                write(layout.headerCols());
             }
         }
 
         public CsvStream appendRow(List<Object> cols) {
+            write(cols);
+            return this;
+        }
+
+        private void write(List<Object> cols) {
+            if (encoder.isPresent()) {
+                encoder.get().appendRow(cols);
+                return;
+            }
             try {
                 out.write(row(cols).getBytes(layout.getCharset()));
                 out.write(layout.getEolSymbols().getBytes());
-                return this;
             } catch (RuntimeException e) {
                 throw e;
             } catch (Exception e) {
@@ -110,6 +134,15 @@ public class CsvWriter {
             }
         }
 
+        /**
+         * Write the buffered rows to the stream. (Buffered engine)
+         * <p>CsvWriter calls it at the end, so call it only when you use CsvStream directly.
+         */
+        public CsvStream flush() {
+            encoder.ifPresent(CsvEncoder::flush);
+            return this;
+        }
+
         public String row(List<Object> cols) {
             List<String> row = new ArrayList<>();
             for (Object col : cols) {
@@ -5,6 +5,7 @@ import java.util.List;
 import javax.validation.Valid;
 
 import io.micronaut.http.annotation.*;
+import io.reactivex.Flowable;
 import io.micronaut.validation.Validated;
 import sample.model.asset.CashInOut;
 import sample.model.asset.CashInOut.FindCashInOut;
@@ -29,4 +30,16 @@ public class AssetAdminController {
         return service.findCashInOut(p);
     }
 
+    /** Download the cash in/out as CSV in chunks. */
+    @Get(value = "/cio/csv{?p*}", produces = "text/csv")
+    public Flowable<byte[]> downloadCashInOutCsv(@Valid FindCashInOut p) {
+        return service.streamCashInOutCsv(p);
+    }
+
+    /** Download the cash in/out as NDJSON in chunks. */
+    @Get(value = "/cio/ndjson{?p*}", produces = "application/x-ndjson")
+    public Flowable<byte[]> downloadCashInOutNdjson(@Valid FindCashInOut p) {
+        return service.streamCashInOutNdjson(p);
+    }
+
 }
@@ -7,6 +7,7 @@ import javax.validation.Valid;
 import io.micronaut.http.*;
 import io.micronaut.http.annotation.*;
 import io.micronaut.validation.Validated;
+import io.reactivex.Flowable;
 import sample.context.AppSetting;
 import sample.context.AppSetting.FindAppSetting;
 import sample.context.audit.*;
@@ -33,6 +34,18 @@ public class SystemAdminController {
         return service.findAuditActor(p);
     }
     
+    /** Download the actor audit logs as CSV in chunks. (the paging is ignored) */
+    @Get(value = "/audit/actor/csv{?p*}", produces = "text/csv")
+    public Flowable<byte[]> downloadAuditActorCsv(@Valid FindAuditActor p) {
+        return service.streamAuditActorCsv(p);
+    }
+
+    /** Download the actor audit logs as NDJSON in chunks. (the paging is ignored) */
+    @Get(value = "/audit/actor/ndjson{?p*}", produces = "application/x-ndjson")
+    public Flowable<byte[]> downloadAuditActorNdjson(@Valid FindAuditActor p) {
+        return service.streamAuditActorNdjson(p);
+    }
+
     @Get(value = "/audit/event{?p*}")
     public PagingList<AuditEvent> findAuditEvent(@Valid FindAuditEvent p) {
         return service.findAuditEvent(p);
@@ -71,6 +71,30 @@ public class JobController {
         });
     }
 
+    @Post("/daily/exportCashflow")
+    public HttpResponse<Void> exportCashflow() {
+        return systemAction(() ->  {
+            asset.exportCashflow();
+            return HttpResponse.ok();
+        });
+    }
+
+    @Post("/daily/exportAuditEvent")
+    public HttpResponse<Void> exportAuditEvent() {
+        return systemAction(() ->  {
+            system.exportAuditEvent();
+            return HttpResponse.ok();
+        });
+    }
+
+    @Post("/monthly/purgeAudit")
+    public HttpResponse<Void> purgeAudit() {
+        return systemAction(() ->  {
+            system.purgeAudit();
+            return HttpResponse.ok();
+        });
+    }
+
     @Get(value = "/audit/event{?p*}")
     public PagingList<AuditEvent> findAuditEvent(@Valid FindAuditEvent p) {
         return system.findAuditEvent(p);
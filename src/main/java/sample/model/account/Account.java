@@ -5,6 +5,9 @@ import java.util.Optional;
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import io.micronaut.security.authentication.providers.PasswordEncoder;
 import lombok.*;
 import sample.ValidationException;
@@ -22,6 +25,8 @@ import sample.util.Validator;
  * low: The minimum columns with this sample.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 @EqualsAndHashCode(callSuper = false)
 public class Account extends OrmActiveRecord<Account> {
@@ -2,6 +2,9 @@ package sample.model.account;
 
 import javax.persistence.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import lombok.*;
 import sample.context.orm.*;
 import sample.model.constraints.*;
@@ -12,13 +15,16 @@ import sample.model.constraints.*;
  * low: The minimum columns with this sample.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 @EqualsAndHashCode(callSuper = false)
 public class FiAccount extends OrmActiveRecord<FiAccount> {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "fi_account_seq")
+    @SequenceGenerator(name = "fi_account_seq", sequenceName = "fi_account_seq", allocationSize = IdAllocationSize)
     private Long id;
     @IdStr
     private String accountId;
@@ -32,7 +38,8 @@ public class FiAccount extends OrmActiveRecord<FiAccount> {
     private String fiAccountId;
 
     public static FiAccount load(final OrmRepository rep, String accountId, String category, String currency) {
-        return rep.tmpl().load("from FiAccount a where a.accountId=?1 and a.category=?2 and a.currency=?3", accountId,
-                category, currency);
+        return rep.tmpl(OrmQueryMetadata.withCache()).load(
+                "from FiAccount a where a.accountId=?1 and a.category=?2 and a.currency=?3",
+                accountId, category, currency);
     }
 }
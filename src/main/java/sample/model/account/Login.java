@@ -4,6 +4,11 @@ import java.util.Optional;
 
 import javax.persistence.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+
 import io.micronaut.security.authentication.providers.*;
 import lombok.*;
 import sample.ValidationException.ErrorKeys;
@@ -16,6 +21,9 @@ import sample.model.constraints.*;
  * low: The minimum columns with this sample.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
 @Data
 @ToString(callSuper = false, exclude = { "password" })
 @EqualsAndHashCode(callSuper = false)
@@ -26,6 +34,8 @@ public class Login extends OrmActiveRecord<Login> implements UserState {
     @Id
     @IdStr
     private String id;
+    /** The natural id which is changeable. (it is cached when the second-level cache is enabled) */
+    @NaturalId(mutable = true)
     private String loginId;
     /** password (encrypted) */
     @Password
@@ -76,7 +86,7 @@ public class Login extends OrmActiveRecord<Login> implements UserState {
     }
 
     public static Optional<Login> getByLoginId(final OrmRepository rep, String loginId) {
-        return Optional.ofNullable(loginId).flatMap(lid -> rep.tmpl().get("from Login where loginId=?1", lid));
+        return Optional.ofNullable(loginId).flatMap(lid -> rep.getByNaturalId(Login.class, lid));
     }
 
     public static Login load(final OrmRepository rep, String id) {
@@ -23,11 +23,12 @@ public class Asset {
         return new Asset(accountId);
     }
 
+    /**
+     * Judge whether the withdrawal is possible with the projected balance until the value day.
+     * <p>The projected balance is cached when CacheHandler is enabled. (see ProjectedBalance)
+     */
     public boolean canWithdraw(final OrmRepository rep, String currency, BigDecimal absAmount, LocalDate valueDay) {
-        Calculator calc = Calculator.of(CashBalance.getOrNew(rep, id, currency).getAmount());
-        Cashflow.findUnrealize(rep, id, currency, valueDay).stream().forEach((cf) -> calc.add(cf.getAmount()));
-        CashInOut.findUnprocessed(rep, id, currency, true).stream()
-                .forEach((withdrawal) -> calc.add(withdrawal.getAbsAmount().negate()));
+        Calculator calc = Calculator.of(ProjectedBalance.get(rep, id, currency).amount(valueDay));
         calc.add(absAmount.negate());
         return 0 <= calc.decimal().signum();
     }
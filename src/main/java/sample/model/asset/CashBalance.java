@@ -2,6 +2,7 @@ package sample.model.asset;
 
 import java.math.*;
 import java.time.*;
+import java.util.List;
 import java.util.Optional;
 
 import javax.persistence.*;
@@ -23,7 +24,8 @@ public class CashBalance extends OrmActiveRecord<CashBalance> {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cash_balance_seq")
+    @SequenceGenerator(name = "cash_balance_seq", sequenceName = "cash_balance_seq", allocationSize = IdAllocationSize)
     private Long id;
     @IdStr
     private String accountId;
@@ -43,7 +45,25 @@ public class CashBalance extends OrmActiveRecord<CashBalance> {
     public CashBalance add(final OrmRepository rep, BigDecimal addAmount) {
         int scale = java.util.Currency.getInstance(currency).getDefaultFractionDigits();
         RoundingMode mode = RoundingMode.DOWN;
-        setAmount(Calculator.of(amount).scale(scale, mode).add(addAmount).decimal());
+        BigDecimal v = Calculator.of(amount).scale(scale, mode).add(addAmount).decimal();
+        ProjectedBalance.changeBalance(rep, accountId, currency, v.subtract(amount));
+        setAmount(v);
+        return update(rep);
+    }
+
+    /**
+     * Add the amounts in order and update the balance once.
+     * <p>The rounding of each addition is the same as {@link #add(OrmRepository, BigDecimal)}.
+     */
+    public CashBalance addAll(final OrmRepository rep, List<BigDecimal> addAmounts) {
+        int scale = java.util.Currency.getInstance(currency).getDefaultFractionDigits();
+        RoundingMode mode = RoundingMode.DOWN;
+        BigDecimal v = amount;
+        for (BigDecimal addAmount : addAmounts) {
+            v = Calculator.of(v).scale(scale, mode).add(addAmount).decimal();
+        }
+        ProjectedBalance.changeBalance(rep, accountId, currency, v.subtract(amount));
+        setAmount(v);
         return update(rep);
     }
 
@@ -2,7 +2,11 @@ package sample.model.asset;
 
 import java.math.BigDecimal;
 import java.time.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import javax.persistence.*;
 import javax.persistence.Entity;
@@ -32,7 +36,8 @@ public class CashInOut extends OrmActiveMetaRecord<CashInOut> {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cash_in_out_seq")
+    @SequenceGenerator(name = "cash_in_out_seq", sequenceName = "cash_in_out_seq", allocationSize = IdAllocationSize)
     private Long id;
     @IdStr
     private String accountId;
@@ -83,6 +88,7 @@ public class CashInOut extends OrmActiveMetaRecord<CashInOut> {
         });
         setStatusType(ActionStatusType.Processed);
         setCashflowId(Cashflow.register(rep, regCf()).getId());
+        changeWithdrawal(rep, absAmount.negate());
         return update(rep);
     }
 
@@ -101,9 +107,16 @@ public class CashInOut extends OrmActiveMetaRecord<CashInOut> {
             v.verify(now.beforeDay(eventDay), AssetErrorKeys.CashInOutBeforeEqualsDay);
         });
         setStatusType(ActionStatusType.Cancelled);
+        changeWithdrawal(rep, absAmount.negate());
         return update(rep);
     }
 
+    private void changeWithdrawal(final OrmRepository rep, BigDecimal absAmount) {
+        if (withdrawal) {
+            ProjectedBalance.changeWithdrawal(rep, accountId, currency, absAmount);
+        }
+    }
+
     /**
      * Mark error status.
      * low: Actually, Take error reasons in an argument and maintain it.
@@ -121,12 +134,23 @@ public class CashInOut extends OrmActiveMetaRecord<CashInOut> {
 
     public static List<CashInOut> find(final OrmRepository rep, final FindCashInOut p) {
         // low: check during a period of from/to if usual
-        return rep.tmpl().find(CashInOut.class, (criteria) -> criteria
+        return rep.tmpl().find(CashInOut.class, (criteria) -> condition(criteria, p).result());
+    }
+
+    /**
+     * Open the cursor of the cash in/out of the condition.
+     * <p>The cursor is opened on the new read-only session. (see OrmRepository#openCursor)
+     */
+    public static OrmCursor<CashInOut> cursor(final OrmRepository rep, final FindCashInOut p) {
+        return rep.openCursor(tmpl -> tmpl.cursor(CashInOut.class, (criteria) -> condition(criteria, p).result()));
+    }
+
+    private static OrmCriteria<CashInOut> condition(final OrmCriteria<CashInOut> criteria, final FindCashInOut p) {
+        return criteria
                 .equal("currency", p.getCurrency())
                 .in("statusType", p.getStatusTypes())
                 .between("updateDate", p.getUpdFromDay().atStartOfDay(), DateUtils.dateTo(p.getUpdToDay()))
-                .sortDesc("updateDate")
-                .result());
+                .sortDesc("updateDate");
     }
 
     public static List<CashInOut> findUnprocessed(final OrmRepository rep) {
@@ -134,6 +158,19 @@ public class CashInOut extends OrmActiveMetaRecord<CashInOut> {
                 rep.dh().time().day(), ActionStatusType.unprocessedTypes);
     }
 
+    /**
+     * Return the ids of the unprocessed cash in/out of the day by account in the order of id.
+     * <p>Only the id and the account id are selected, so no entity is loaded.
+     */
+    public static Map<String, List<Long>> findUnprocessedIds(final OrmRepository rep) {
+        List<Object[]> rows = rep.tmpl().find(
+                "select c.id, c.accountId from CashInOut c where c.eventDay=?1 and c.statusType in ?2 order by c.id",
+                rep.dh().time().day(), ActionStatusType.unprocessedTypes);
+        Map<String, List<Long>> ids = new LinkedHashMap<>();
+        rows.forEach(row -> ids.computeIfAbsent((String) row[1], k -> new ArrayList<>()).add((Long) row[0]));
+        return ids;
+    }
+
     public static List<CashInOut> findUnprocessed(final OrmRepository rep, String accountId, String currency,
             boolean withdrawal) {
         return rep.tmpl().find(
@@ -148,6 +185,15 @@ public class CashInOut extends OrmActiveMetaRecord<CashInOut> {
                 ActionStatusType.unprocessedTypes);
     }
 
+    /** Return the amount of the unprocessed withdrawal. */
+    public static BigDecimal sumUnprocessedWithdrawal(final OrmRepository rep, String accountId, String currency) {
+        List<BigDecimal> v = rep.tmpl().find(
+                "select sum(c.absAmount) from CashInOut c where c.accountId=?1 and c.currency=?2 and c.withdrawal=true and c.statusType in ?3",
+                accountId, currency, ActionStatusType.unprocessedTypes);
+        // low: sum of no row is null.
+        return Optional.ofNullable(v.get(0)).orElse(BigDecimal.ZERO);
+    }
+
     public static CashInOut withdraw(final OrmRepository rep, final BusinessDayHandler day, final RegCashOut p) {
         DomainHelper dh = rep.dh();
         TimePoint now = dh.time().tp();
@@ -166,7 +212,9 @@ public class CashInOut extends OrmActiveMetaRecord<CashInOut> {
         FiAccount acc = FiAccount.load(rep, p.getAccountId(), Remarks.CashOut, p.getCurrency());
         SelfFiAccount selfAcc = SelfFiAccount.load(rep, Remarks.CashOut, p.getCurrency());
         String updateActor = dh.actor().getId();
-        return p.create(now, eventDay, valueDay, acc, selfAcc, updateActor).save(rep);
+        CashInOut cio = p.create(now, eventDay, valueDay, acc, selfAcc, updateActor).save(rep);
+        cio.changeWithdrawal(rep, cio.getAbsAmount());
+        return cio;
     }
 
     @Data
@@ -3,6 +3,10 @@ package sample.model.asset;
 import java.math.BigDecimal;
 import java.time.*;
 import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -29,7 +33,8 @@ public class Cashflow extends OrmActiveMetaRecord<Cashflow> {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cashflow_seq")
+    @SequenceGenerator(name = "cashflow_seq", sequenceName = "cashflow_seq", allocationSize = IdAllocationSize)
     private Long id;
     @IdStr
     private String accountId;
@@ -69,10 +74,39 @@ public class Cashflow extends OrmActiveMetaRecord<Cashflow> {
 
         setStatusType(ActionStatusType.Processed);
         update(rep);
+        ProjectedBalance.changeCashflow(rep, accountId, currency, valueDay, amount.negate());
         CashBalance.getOrNew(rep, accountId, currency).add(rep, amount);
         return this;
     }
 
+    /**
+     * Make the cashflows of the same account and currency processed in a mass and reflect them to the balance.
+     * <p>The status is updated by one "update ... where id in", and the balance is updated once.
+     * The balance is added in the order of the cashflows, so the result is the same as {@link #realize(OrmRepository)}.
+     * When any cashflow cannot be realized, ValidationException is thrown and the caller rolls back the group.
+     */
+    public static List<Cashflow> realizeAll(final OrmRepository rep, String accountId, String currency,
+            final List<Cashflow> list) {
+        Validator.validate((v) -> {
+            for (Cashflow cf : list) {
+                v.verify(cf.canRealize(rep), AssetErrorKeys.CashflowRealizeDay);
+                v.verify(cf.getStatusType().isUnprocessing(), ErrorKeys.ActionUnprocessing);
+            }
+        });
+        List<Long> ids = list.stream().map(Cashflow::getId).collect(Collectors.toList());
+        int updated = rep.tmpl().execute(
+                "update Cashflow c set c.statusType=?1, c.updateId=?2, c.updateDate=?3 where c.id in ?4 and c.statusType in ?5",
+                ActionStatusType.Processed, rep.dh().actor().getId(), rep.dh().time().date(), ids,
+                ActionStatusType.unprocessingTypes);
+        // The other processed the cashflow after it was read.
+        Validator.validate((v) -> v.verify(updated == ids.size(), ErrorKeys.ActionUnprocessing));
+        list.forEach(cf -> ProjectedBalance.changeCashflow(rep, accountId, currency, cf.getValueDay(),
+                cf.getAmount().negate()));
+        CashBalance.getOrNew(rep, accountId, currency)
+                .addAll(rep, list.stream().map(Cashflow::getAmount).collect(Collectors.toList()));
+        return list;
+    }
+
     /**
      * Mark error status.
      * low: Actually, Take error reasons in an argument and maintain it.
@@ -104,6 +138,37 @@ public class Cashflow extends OrmActiveMetaRecord<Cashflow> {
                 ActionStatusType.unprocessedTypes);
     }
 
+    /** Return the amount of the unrealized cashflow per value day. */
+    public static SortedMap<LocalDate, BigDecimal> sumUnrealize(final OrmRepository rep, String accountId,
+            String currency) {
+        List<Object[]> list = rep.tmpl().find(
+                "select c.valueDay, sum(c.amount) from Cashflow c where c.accountId=?1 and c.currency=?2 and c.statusType in ?3 group by c.valueDay",
+                accountId, currency, ActionStatusType.unprocessingTypes);
+        SortedMap<LocalDate, BigDecimal> v = new TreeMap<>();
+        list.forEach(row -> v.put((LocalDate) row[0], (BigDecimal) row[1]));
+        return v;
+    }
+
+    /**
+     * Find the cashflow of the value day after lastId in the order of id. (keyset paging)
+     * <p>Pass the last id of the previous result to lastId so that the page does not depend on the offset.
+     */
+    public static List<Cashflow> findDoRealize(final OrmRepository rep, LocalDate valueDay, long lastId, int limit) {
+        return rep.tmpl().<Cashflow>find(
+                "from Cashflow c where c.valueDay=?1 and c.statusType in ?2 and c.id>?3 order by c.id",
+                new Pagination(1, limit).ignoreTotal(), valueDay, ActionStatusType.unprocessedTypes, lastId)
+                .getList();
+    }
+
+    /**
+     * Pass the cashflow of the event day to the consumer in the order of id.
+     * <p>The cashflow is detached from the session. (see OrmTemplate#scroll)
+     * @return the number of the cashflow
+     */
+    public static long scroll(final OrmRepository rep, LocalDate eventDay, final Consumer<Cashflow> consumer) {
+        return rep.tmpl().scroll("from Cashflow c where c.eventDay=?1 order by c.id", consumer, eventDay);
+    }
+
     /**
      * Register cashflow.
      * <p>Reached a value day, just reflect it to the balance.
@@ -113,6 +178,7 @@ public class Cashflow extends OrmActiveMetaRecord<Cashflow> {
         Validator.validate((v) -> v.checkField(now.beforeEqualsDay(p.getValueDay()),
                 "valueDay", AssetErrorKeys.CashflowBeforeEqualsDay));
         Cashflow cf = p.create(now).save(rep);
+        ProjectedBalance.changeCashflow(rep, cf.getAccountId(), cf.getCurrency(), cf.getValueDay(), cf.getAmount());
         return cf.canRealize(rep) ? cf.realize(rep) : cf;
     }
 
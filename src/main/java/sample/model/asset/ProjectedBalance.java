@@ -0,0 +1,100 @@
+package sample.model.asset;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+import lombok.Value;
+import sample.context.cache.CacheHandler;
+import sample.context.orm.OrmRepository;
+
+/**
+ * The projected balance of the account and currency.
+ * <p>It is the balance of the day with the unrealized cashflow per value day and the unprocessed withdrawal.
+ * The projection is cached by CacheHandler and maintained by the delta of
+ *  the cashflow / cash in out / balance which changes it.
+ */
+@Value
+public class ProjectedBalance {
+    public static final String CacheRegion = "asset.projected";
+
+    private String accountId;
+    private String currency;
+    /** The base day of the balance */
+    private LocalDate baseDay;
+    private BigDecimal balance;
+    /** The amount of the unrealized cashflow per value day */
+    private SortedMap<LocalDate, BigDecimal> cashflows;
+    /** The amount of the unprocessed withdrawal */
+    private BigDecimal withdrawal;
+
+    /** Return the projected amount which reflects the cashflow until the value day. */
+    public BigDecimal amount(LocalDate valueDay) {
+        BigDecimal v = balance.subtract(withdrawal);
+        for (BigDecimal amount : cashflows.headMap(valueDay.plusDays(1)).values()) {
+            v = v.add(amount);
+        }
+        return v;
+    }
+
+    public ProjectedBalance addBalance(BigDecimal amount) {
+        return new ProjectedBalance(accountId, currency, baseDay, balance.add(amount), cashflows, withdrawal);
+    }
+
+    public ProjectedBalance addCashflow(LocalDate valueDay, BigDecimal amount) {
+        SortedMap<LocalDate, BigDecimal> v = new TreeMap<>(cashflows);
+        v.merge(valueDay, amount, BigDecimal::add);
+        return new ProjectedBalance(accountId, currency, baseDay, balance, Collections.unmodifiableSortedMap(v),
+                withdrawal);
+    }
+
+    public ProjectedBalance addWithdrawal(BigDecimal absAmount) {
+        return new ProjectedBalance(accountId, currency, baseDay, balance, cashflows, withdrawal.add(absAmount));
+    }
+
+    /**
+     * Return the projected balance of the day.
+     * <p>The projection of the previous day is loaded again. (the balance is carried forward)
+     */
+    public static ProjectedBalance get(final OrmRepository rep, String accountId, String currency) {
+        CacheHandler cache = rep.dh().cache();
+        LocalDate day = rep.dh().time().day();
+        ProjectedBalance v = cache.load(CacheRegion, key(accountId, currency), () -> load(rep, accountId, currency));
+        if (v.getBaseDay().equals(day)) {
+            return v;
+        }
+        cache.evict(CacheRegion, key(accountId, currency));
+        return cache.load(CacheRegion, key(accountId, currency), () -> load(rep, accountId, currency));
+    }
+
+    /** Load the projected balance from DB. */
+    public static ProjectedBalance load(final OrmRepository rep, String accountId, String currency) {
+        CashBalance cb = CashBalance.getOrNew(rep, accountId, currency);
+        return new ProjectedBalance(accountId, currency, cb.getBaseDay(), cb.getAmount(),
+                Collections.unmodifiableSortedMap(Cashflow.sumUnrealize(rep, accountId, currency)),
+                CashInOut.sumUnprocessedWithdrawal(rep, accountId, currency));
+    }
+
+    public static void changeBalance(final OrmRepository rep, String accountId, String currency,
+            BigDecimal amount) {
+        rep.dh().cache().<ProjectedBalance> change(CacheRegion, key(accountId, currency),
+                v -> v.addBalance(amount));
+    }
+
+    public static void changeCashflow(final OrmRepository rep, String accountId, String currency,
+            LocalDate valueDay, BigDecimal amount) {
+        rep.dh().cache().<ProjectedBalance> change(CacheRegion, key(accountId, currency),
+                v -> v.addCashflow(valueDay, amount));
+    }
+
+    public static void changeWithdrawal(final OrmRepository rep, String accountId, String currency,
+            BigDecimal absAmount) {
+        rep.dh().cache().<ProjectedBalance> change(CacheRegion, key(accountId, currency),
+                v -> v.addWithdrawal(absAmount));
+    }
+
+    private static List<String> key(String accountId, String currency) {
+        return Arrays.asList(accountId, currency);
+    }
+
+}
@@ -2,10 +2,14 @@ package sample.model.master;
 
 import java.time.*;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import javax.persistence.*;
 import javax.validation.Valid;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import lombok.*;
 import sample.context.Dto;
 import sample.context.orm.*;
@@ -17,6 +21,8 @@ import sample.util.DateUtils;
  * Holiday of the service company.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 @EqualsAndHashCode(callSuper = false)
 public class Holiday extends OrmActiveMetaRecord<Holiday> {
@@ -24,7 +30,8 @@ public class Holiday extends OrmActiveMetaRecord<Holiday> {
     public static final String CategoryDefault = "default";
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "holiday_seq")
+    @SequenceGenerator(name = "holiday_seq", sequenceName = "holiday_seq", allocationSize = IdAllocationSize)
     private Long id;
     @Category
     private String category;
@@ -46,7 +53,8 @@ public class Holiday extends OrmActiveMetaRecord<Holiday> {
     }
 
     public static Optional<Holiday> get(final OrmRepository rep, LocalDate day, String category) {
-        return rep.tmpl().get("from Holiday h where h.category=?1 and h.day=?2", category, day);
+        return rep.tmpl(OrmQueryMetadata.withCache()).get(
+                "from Holiday h where h.category=?1 and h.day=?2", category, day);
     }
 
     public static Holiday load(final OrmRepository rep, LocalDate day) {
@@ -54,7 +62,8 @@ public class Holiday extends OrmActiveMetaRecord<Holiday> {
     }
 
     public static Holiday load(final OrmRepository rep, LocalDate day, String category) {
-        return rep.tmpl().load("from Holiday h where h.category=?1 and h.day=?2", category, day);
+        return rep.tmpl(OrmQueryMetadata.withCache()).load(
+                "from Holiday h where h.category=?1 and h.day=?2", category, day);
     }
 
     public static List<Holiday> find(final OrmRepository rep, final int year) {
@@ -62,14 +71,15 @@ public class Holiday extends OrmActiveMetaRecord<Holiday> {
     }
 
     public static List<Holiday> find(final OrmRepository rep, final int year, final String category) {
-        return rep.tmpl().find("from Holiday h where h.category=?1 and h.day between ?2 and ?3 order by h.day",
+        return rep.tmpl(OrmQueryMetadata.withCache()).find(
+                "from Holiday h where h.category=?1 and h.day between ?2 and ?3 order by h.day",
                 category, LocalDate.ofYearDay(year, 1), DateUtils.dayTo(year));
     }
 
     public static void register(final OrmRepository rep, final RegHoliday p) {
         rep.tmpl().execute("delete from Holiday h where h.category=?1 and h.day between ?2 and ?3",
                 p.category, LocalDate.ofYearDay(p.year, 1), DateUtils.dayTo(p.year));
-        p.list.forEach(v -> v.create(p).save(rep));
+        rep.saveAll(p.list.stream().map(v -> v.create(p)).collect(Collectors.toList()));
     }
 
     @Data
@@ -2,6 +2,9 @@ package sample.model.master;
 
 import javax.persistence.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import lombok.*;
 import sample.context.orm.*;
 import sample.model.constraints.*;
@@ -11,13 +14,16 @@ import sample.model.constraints.*;
  * low: It is a sample, a branch and a name, and considerably originally omit required information.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 @EqualsAndHashCode(callSuper = false)
 public class SelfFiAccount extends OrmActiveRecord<SelfFiAccount> {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "self_fi_account_seq")
+    @SequenceGenerator(name = "self_fi_account_seq", sequenceName = "self_fi_account_seq", allocationSize = IdAllocationSize)
     private Long id;
     @Category
     private String category;
@@ -31,7 +37,8 @@ public class SelfFiAccount extends OrmActiveRecord<SelfFiAccount> {
     private String fiAccountId;
 
     public static SelfFiAccount load(final OrmRepository rep, String category, String currency) {
-        return rep.tmpl().load("from SelfFiAccount a where a.category=?1 and a.currency=?2", category, currency);
+        return rep.tmpl(OrmQueryMetadata.withCache()).load(
+                "from SelfFiAccount a where a.category=?1 and a.currency=?2", category, currency);
     }
 
 }
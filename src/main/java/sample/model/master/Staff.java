@@ -4,6 +4,8 @@ import java.util.*;
 
 import javax.persistence.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.criterion.MatchMode;
 
 import io.micronaut.security.authentication.providers.*;
@@ -20,6 +22,8 @@ import sample.util.Validator;
  * Staff of the service company.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 @ToString(callSuper = false, exclude = { "password" })
 @EqualsAndHashCode(callSuper = false)
@@ -4,6 +4,9 @@ import java.util.List;
 
 import javax.persistence.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import lombok.*;
 import sample.context.orm.*;
 import sample.model.constraints.*;
@@ -12,6 +15,8 @@ import sample.model.constraints.*;
  * The authority that was assigned to an staff.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -20,7 +25,8 @@ public class StaffAuthority extends OrmActiveRecord<StaffAuthority> {
     private static final long serialVersionUID = 1l;
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "staff_authority_seq")
+    @SequenceGenerator(name = "staff_authority_seq", sequenceName = "staff_authority_seq", allocationSize = IdAllocationSize)
     private Long id;
     @IdStr
     private String staffId;
@@ -29,7 +35,7 @@ public class StaffAuthority extends OrmActiveRecord<StaffAuthority> {
     private String authority;
 
     public static List<StaffAuthority> find(final OrmRepository rep, String staffId) {
-        return rep.tmpl().find("from StaffAuthority where staffId=?1", staffId);
+        return rep.tmpl(OrmQueryMetadata.withCache()).find("from StaffAuthority where staffId=?1", staffId);
     }
 
 }
@@ -1,19 +1,32 @@
 package sample.usecase;
 
 import java.time.LocalDate;
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import javax.inject.Singleton;
 
 import org.springframework.transaction.PlatformTransactionManager;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micronaut.context.annotation.Value;
+import io.reactivex.Flowable;
 import lombok.extern.slf4j.Slf4j;
 import sample.context.audit.AuditHandler;
+import sample.context.batch.PartitionExecutor;
+import sample.context.batch.PartitionExecutor.PartitionResult;
 import sample.context.lock.IdLockHandler;
 import sample.context.lock.IdLockHandler.LockType;
 import sample.context.orm.*;
+import sample.context.report.ReportHandler;
+import sample.context.report.csv.CsvLayout;
+import sample.context.report.csv.CsvLayout.CsvEngine;
+import sample.context.report.csv.CsvPartWriter.CsvPart;
 import sample.model.asset.*;
 import sample.model.asset.CashInOut.FindCashInOut;
+import sample.util.DateUtils;
 
 /**
  * The use case processing for the asset domain in the organization.
@@ -21,21 +34,40 @@ import sample.model.asset.CashInOut.FindCashInOut;
 @Singleton
 @Slf4j
 public class AssetAdminService {
+    public static final String KeyRealizeChunk = "extension.batch.realize-chunk";
+    public static final String KeyRealizeChunkEL = "${" + KeyRealizeChunk + ":1000}";
+    public static final String KeyRealizeBulk = "extension.batch.realize-bulk";
+    public static final String KeyRealizeBulkEL = "${" + KeyRealizeBulk + ":false}";
 
     private final DefaultRepository rep;
     private final PlatformTransactionManager txm;
     private final AuditHandler audit;
     private final IdLockHandler idLock;
+    private final PartitionExecutor partition;
+    private final int realizeChunk;
+    private final boolean realizeBulk;
+    private final ReportHandler report;
+    private final ObjectMapper mapper;
 
     public AssetAdminService(
             DefaultRepository rep,
             PlatformTransactionManager txm,
             AuditHandler audit,
-            IdLockHandler idLock) {
+            IdLockHandler idLock,
+            PartitionExecutor partition,
+            @Value(KeyRealizeChunkEL) int realizeChunk,
+            @Value(KeyRealizeBulkEL) boolean realizeBulk,
+            ReportHandler report,
+            ObjectMapper mapper) {
         this.rep = rep;
         this.txm = txm;
         this.audit = audit;
         this.idLock = idLock;
+        this.partition = partition;
+        this.realizeChunk = realizeChunk;
+        this.realizeBulk = realizeBulk;
+        this.report = report;
+        this.mapper = mapper;
     }
 
     public List<CashInOut> findCashInOut(final FindCashInOut p) {
@@ -43,62 +75,181 @@ public class AssetAdminService {
                 () -> CashInOut.find(rep, p));
     }
 
-    public void closingCashOut() {
-        audit.audit("Closing cash out.", () -> {
-            TxTemplate.of(txm).tx(() -> closingCashOutInTx());
-        });
+    /** Stream the cash in/out of the condition as CSV. */
+    public Flowable<byte[]> streamCashInOutCsv(final FindCashInOut p) {
+        CsvLayout layout = new CsvLayout();
+        layout.setHeader("id,accountId,currency,absAmount,withdrawal,requestDay,requestDate,eventDay,valueDay,"
+                + "targetFiCode,targetFiAccountId,selfFiCode,selfFiAccountId,statusType,cashflowId,updateDate");
+        return report.<CashInOut> streamCsv(() -> CashInOut.cursor(rep, p), v -> Arrays.asList(
+                v.getId(), v.getAccountId(), v.getCurrency(), v.getAbsAmount(), v.isWithdrawal(),
+                v.getRequestDay(), v.getRequestDate(), v.getEventDay(), v.getValueDay(),
+                v.getTargetFiCode(), v.getTargetFiAccountId(), v.getSelfFiCode(), v.getSelfFiAccountId(),
+                v.getStatusType(), v.getCashflowId(), v.getUpdateDate()), layout);
     }
 
-    private void closingCashOutInTx() {
-        //low: It is desirable to handle it to an account unit in a mass.
-        //low: Divide paging by id sort and carry it out for a difference
-        // because heaps overflow when just do it in large quantities.
-        CashInOut.findUnprocessed(rep).forEach(cio -> {
-            idLock.call(cio.getAccountId(), LockType.Write, () -> {
-                try {
-                    cio.process(rep);
-                    //low: Guarantee that SQL is carried out.
-                    rep.flushAndClear();
-                } catch (Exception e) {
-                    log.error("[" + cio.getId() + "] Failure closing cash out.", e);
-                    try {
-                        cio.error(rep);
-                        rep.flush();
-                    } catch (Exception ex) {
-                        //low: Keep it for a mention only for logger which is a double obstacle. (probably DB is caused)
-                    }
-                }
+    /**
+     * Export the cashflow of the day into the CSV part files. ("cashflow-yyyy-MM-dd")
+     * <p>see ReportHandler#writeCsvParts
+     */
+    public List<CsvPart> exportCashflow() {
+        LocalDate eventDay = rep.dh().time().day();
+        CsvLayout layout = new CsvLayout();
+        layout.setHeader("id,accountId,currency,amount,cashflowType,remark,eventDay,eventDate,valueDay,"
+                + "statusType,updateDate");
+        layout.setEngine(CsvEngine.Buffered);
+        return audit.audit("Export cashflow.", () -> TxTemplate.of(txm).readOnly().tx(
+                () -> report.writeCsvParts("cashflow-" + DateUtils.dayFormat(eventDay), layout,
+                        stream -> Cashflow.scroll(rep, eventDay, v -> stream.appendRow(Arrays.asList(
+                                v.getId(), v.getAccountId(), v.getCurrency(), v.getAmount(), v.getCashflowType(),
+                                v.getRemark(), v.getEventDay(), v.getEventDate(), v.getValueDay(),
+                                v.getStatusType(), v.getUpdateDate()))))));
+    }
+
+    /** Stream the cash in/out of the condition as NDJSON. */
+    public Flowable<byte[]> streamCashInOutNdjson(final FindCashInOut p) {
+        return report.streamNdjson(() -> CashInOut.cursor(rep, p), mapper);
+    }
+
+    /**
+     * <p>Process the unprocessed cash in/out of the day.
+     * <p>The rows are partitioned by account and each partition is processed
+     *  in a transaction with the write lock of the account. (see PartitionExecutor)
+     */
+    public List<PartitionResult<String>> closingCashOut() {
+        return audit.audit("Closing cash out.", () -> {
+            //low: Only the ids are held here, and the rows are loaded one by one in the partition.
+            Map<String, List<Long>> partitions = TxTemplate.of(txm).readOnly().tx(
+                    () -> CashInOut.findUnprocessedIds(rep));
+            List<PartitionResult<String>> results = partition.execute(partitions, (accountId, ids, result) -> {
+                TxTemplate.of(txm).writeIdLock(idLock, accountId).tx(() -> {
+                    ids.forEach(id -> {
+                        if (closingCashOut(CashInOut.load(rep, id))) {
+                            result.success();
+                        } else {
+                            result.error();
+                        }
+                    });
+                });
             });
+            log.info("Closing cash out. [partition: {}, success: {}, error: {}]", results.size(),
+                    PartitionResult.success(results), PartitionResult.error(results));
+            return results;
         });
     }
 
+    private boolean closingCashOut(final CashInOut cio) {
+        try {
+            cio.process(rep);
+            //low: Guarantee that SQL is carried out.
+            rep.flushAndClear();
+            return true;
+        } catch (Exception e) {
+            log.error("[" + cio.getId() + "] Failure closing cash out.", e);
+            try {
+                cio.error(rep);
+                rep.flush();
+            } catch (Exception ex) {
+                //low: Keep it for a mention only for logger which is a double obstacle. (probably DB is caused)
+            }
+            return false;
+        }
+    }
+
     /**
      * <p>Reflect the cashflow that reached an account day in the balance.
+     * <p>The cashflow is read by keyset paging of id and committed per page of "extension.batch.realize-chunk".
+     * The last id is kept only in the execution, so the re-execution retries the cashflow of the Error status.
+     * <p>When "extension.batch.realize-bulk" is enabled, the page is realized in a mass
+     *  per account and currency. (see Cashflow#realizeAll)
      */
     public void realizeCashflow() {
         audit.audit("Realize cashflow.", () -> {
-            TxTemplate.of(txm).tx(() -> realizeCashflowInTx());
+            //low: Expect the practice after the rollover day.
+            LocalDate day = rep.dh().time().day();
+            Optional<Long> lastId = Optional.of(0L);
+            while (lastId.isPresent()) {
+                final long fromId = lastId.get();
+                lastId = realizeBulk ? realizeCashflowBulk(day, fromId)
+                        : TxTemplate.of(txm).tx(() -> realizeCashflowInTx(day, fromId));
+            }
         });
     }
 
-    private void realizeCashflowInTx() {
-      //low: Expect the practice after the rollover day.
-        LocalDate day = rep.dh().time().day();
-        for (final Cashflow cf : Cashflow.findDoRealize(rep, day)) {
-            idLock.call(cf.getAccountId(), LockType.Write, () -> {
-                try {
-                    cf.realize(rep);
-                    rep.flushAndClear();
-                } catch (Exception e) {
-                    log.error("[" + cf.getId() + "] Failure realize cashflow.", e);
+    /** Return the last id of the page, or empty when no cashflow remains. */
+    private Optional<Long> realizeCashflowInTx(LocalDate day, long lastId) {
+        List<Cashflow> page = Cashflow.findDoRealize(rep, day, lastId, realizeChunk);
+        groupByAccount(page, Cashflow::getAccountId, Function.identity()).forEach((accountId, list) -> {
+            idLock.call(accountId, LockType.Write, () -> list.forEach(this::realizeCashflow));
+        });
+        return page.isEmpty() ? Optional.empty() : Optional.of(page.get(page.size() - 1).getId());
+    }
+
+    /**
+     * Realize the page in a transaction per account and currency.
+     * <p>The group which failed is rolled back and realized again in a transaction per row
+     *  so that the error is isolated per row.
+     * @return the last id of the page, or empty when no cashflow remains.
+     */
+    private Optional<Long> realizeCashflowBulk(LocalDate day, long lastId) {
+        List<Cashflow> page = TxTemplate.of(txm).readOnly().tx(
+                () -> Cashflow.findDoRealize(rep, day, lastId, realizeChunk));
+        page.stream()
+                .collect(Collectors.groupingBy(cf -> Arrays.asList(cf.getAccountId(), cf.getCurrency()),
+                        LinkedHashMap::new, Collectors.toList()))
+                .forEach((key, list) -> {
+                    String accountId = key.get(0);
                     try {
-                        cf.error(rep);
-                        rep.flush();
-                    } catch (Exception ex) {
+                        TxTemplate.of(txm).writeIdLock(idLock, accountId).tx(() -> {
+                            Cashflow.realizeAll(rep, accountId, key.get(1), list);
+                        });
+                    } catch (Exception e) {
+                        log.warn("[" + accountId + "] Failure bulk realize cashflow, realize it row by row.", e);
+                        list.forEach(cf -> realizeCashflowRow(accountId, cf.getId()));
                     }
-                }
+                });
+        return page.isEmpty() ? Optional.empty() : Optional.of(page.get(page.size() - 1).getId());
+    }
+
+    /**
+     * Realize the cashflow in its own transaction.
+     * <p>The transaction which failed is rolled back, so the Error status is committed in a new transaction.
+     */
+    private void realizeCashflowRow(String accountId, Long id) {
+        try {
+            TxTemplate.of(txm).writeIdLock(idLock, accountId).tx(() -> {
+                Cashflow.load(rep, id).realize(rep);
             });
+        } catch (Exception e) {
+            log.error("[" + id + "] Failure realize cashflow.", e);
+            try {
+                TxTemplate.of(txm).writeIdLock(idLock, accountId).tx(() -> {
+                    Cashflow.load(rep, id).error(rep);
+                });
+            } catch (Exception ex) {
+                //low: Keep it for a mention only for logger which is a double obstacle. (probably DB is caused)
+            }
         }
     }
 
+    private void realizeCashflow(final Cashflow cf) {
+        try {
+            cf.realize(rep);
+            rep.flushAndClear();
+        } catch (Exception e) {
+            log.error("[" + cf.getId() + "] Failure realize cashflow.", e);
+            try {
+                cf.error(rep);
+                rep.flush();
+            } catch (Exception ex) {
+            }
+        }
+    }
+
+    /** Group the rows by account in the order of the rows. */
+    private <T, V> Map<String, List<V>> groupByAccount(List<T> list, Function<T, String> accountId,
+            Function<T, V> value) {
+        return list.stream().collect(Collectors.groupingBy(accountId, LinkedHashMap::new,
+                Collectors.mapping(value, Collectors.toList())));
+    }
+
 }
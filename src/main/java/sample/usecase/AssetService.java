@@ -1,11 +1,13 @@
 package sample.usecase;
 
+import java.time.Duration;
 import java.util.List;
 
 import javax.inject.Singleton;
 
 import org.springframework.transaction.PlatformTransactionManager;
 
+import io.micronaut.context.annotation.Value;
 import io.micronaut.context.event.ApplicationEventPublisher;
 import sample.context.actor.*;
 import sample.context.audit.AuditHandler;
@@ -30,6 +32,7 @@ public class AssetService {
     private final IdLockHandler idLock;
     private final BusinessDayHandler businessDay;
     private final ApplicationEventPublisher event;
+    private final Duration lockTimeout;
 
     public AssetService(
             DefaultRepository rep,
@@ -38,7 +41,8 @@ public class AssetService {
             AuditHandler audit,
             IdLockHandler idLock,
             BusinessDayHandler businessDay,
-            ApplicationEventPublisher event) {
+            ApplicationEventPublisher event,
+            @Value(IdLockHandler.KeyTimeoutEL) Duration lockTimeout) {
         this.rep = rep;
         this.txm = txm;
         this.actorSession = actorSession;
@@ -46,11 +50,12 @@ public class AssetService {
         this.idLock = idLock;
         this.businessDay = businessDay;
         this.event = event;
+        this.lockTimeout = lockTimeout;
     }
 
     public List<CashInOut> findUnprocessedCashOut() {
         final String accId = actor().getId();
-        return TxTemplate.of(txm).readIdLock(idLock, accId).tx(() -> {
+        return TxTemplate.of(txm).readIdLock(idLock, accId).lockTimeout(lockTimeout).tx(() -> {
             return CashInOut.findUnprocessed(rep, accId);
         });
     }
@@ -63,7 +68,8 @@ public class AssetService {
         return audit.audit("requesting a withdrawal", () -> {
             p.setAccountId(actor().getId());  // The customer side overwrites in login users forcibly
             //low: Take account ID lock (WRITE) and transaction and handle transfer
-            CashInOut cio = TxTemplate.of(txm).writeIdLock(idLock, actor().getId()).tx(() -> {
+            //low: Give up in the timeout so that a slow request on the same account does not pin the worker thread
+            CashInOut cio = TxTemplate.of(txm).writeIdLock(idLock, actor().getId()).lockTimeout(lockTimeout).tx(() -> {
                 return CashInOut.withdraw(rep, businessDay, p);
             });
             //low: this service e-mail it and notify user.
@@ -1,39 +1,62 @@
 package sample.usecase;
 
-import java.util.List;
+import java.time.*;
+import java.util.*;
+import java.util.function.*;
 
 import javax.inject.*;
 
 import org.springframework.transaction.PlatformTransactionManager;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micronaut.context.annotation.Value;
+import io.reactivex.Flowable;
+
 import sample.context.AppSetting;
 import sample.context.AppSetting.FindAppSetting;
 import sample.context.audit.*;
 import sample.context.audit.AuditActor.FindAuditActor;
 import sample.context.audit.AuditEvent.FindAuditEvent;
 import sample.context.orm.*;
+import sample.context.report.ReportHandler;
+import sample.context.report.csv.CsvLayout;
+import sample.context.report.csv.CsvLayout.CsvEngine;
+import sample.context.report.csv.CsvPartWriter.CsvPart;
 import sample.model.BusinessDayHandler;
+import sample.util.DateUtils;
 
 /**
  * The use case processing for the system domain in the organization.
  */
 @Singleton
 public class SystemAdminService {
+    public static final String KeyAuditRetention = "extension.audit.retention-months";
+    public static final String KeyAuditRetentionEL = "${" + KeyAuditRetention + ":12}";
 
     private final SystemRepository rep;
     private final PlatformTransactionManager txm;
     private final AuditHandler audit;
     private final BusinessDayHandler businessDay;
+    private final ReportHandler report;
+    private final ObjectMapper mapper;
+    private final int auditRetention;
 
     public SystemAdminService(
             SystemRepository rep,
             @Named(SystemRepository.Name) PlatformTransactionManager txm,
             AuditHandler audit,
-            BusinessDayHandler businessDay) {
+            BusinessDayHandler businessDay,
+            ReportHandler report,
+            ObjectMapper mapper,
+            @Value(KeyAuditRetentionEL) int auditRetention) {
         this.rep = rep;
         this.txm = txm;
         this.audit = audit;
         this.businessDay = businessDay;
+        this.report = report;
+        this.mapper = mapper;
+        this.auditRetention = auditRetention;
     }
 
     public PagingList<AuditActor> findAuditActor(FindAuditActor p) {
@@ -41,11 +64,109 @@ public class SystemAdminService {
                 () -> AuditActor.find(rep, p));
     }
 
+    /** Stream all the actor audit logs of the condition as CSV. (the paging is ignored) */
+    public Flowable<byte[]> streamAuditActorCsv(FindAuditActor p) {
+        CsvLayout layout = new CsvLayout();
+        layout.setHeader("id,actorId,roleType,source,category,message,statusType,errorReason,time,startDate,endDate");
+        return report.<AuditActor> streamCsv(() -> AuditActor.cursor(rep, p), v -> Arrays.asList(
+                v.getId(), v.getActorId(), v.getRoleType(), v.getSource(), v.getCategory(), v.getMessage(),
+                v.getStatusType(), v.getErrorReason(), v.getTime(), v.getStartDate(), v.getEndDate()), layout);
+    }
+
+    /** Stream all the actor audit logs of the condition as NDJSON. (the paging is ignored) */
+    public Flowable<byte[]> streamAuditActorNdjson(FindAuditActor p) {
+        return report.streamNdjson(() -> AuditActor.cursor(rep, p), mapper);
+    }
+
     public PagingList<AuditEvent> findAuditEvent(FindAuditEvent p) {
         return TxTemplate.of(txm).readOnly().tx(
                 () -> AuditEvent.find(rep, p));
     }
 
+    /**
+     * Export the event audit logs which started on the day into the CSV part files. ("audit-event-yyyy-MM-dd")
+     * <p>see ReportHandler#writeCsvParts
+     */
+    public List<CsvPart> exportAuditEvent() {
+        LocalDate day = rep.dh().time().day();
+        CsvLayout layout = new CsvLayout();
+        layout.setHeader("id,category,message,statusType,errorReason,time,startDate,endDate");
+        layout.setEngine(CsvEngine.Buffered);
+        return audit.audit("Export event audit logs.", () -> TxTemplate.of(txm).readOnly().tx(
+                () -> report.writeCsvParts("audit-event-" + DateUtils.dayFormat(day), layout,
+                        stream -> AuditEvent.scroll(rep, day, v -> stream.appendRow(Arrays.asList(
+                                v.getId(), v.getCategory(), v.getMessage(), v.getStatusType(), v.getErrorReason(),
+                                v.getTime(), v.getStartDate(), v.getEndDate()))))));
+    }
+
+    /**
+     * Archive the audit logs of the months before "extension.audit.retention-months" into the compressed
+     *  CSV part files ("audit-actor-yyyy-MM" / "audit-event-yyyy-MM"), and delete them by the bulk delete.
+     * <p>The month is archived and deleted in the transaction per the month and the log type.
+     * The months without the log are skipped.
+     * The recent logs whose texts lost their terms by the purge are indexed again. (see AuditTerm#repair)
+     * @return the archived parts
+     */
+    public List<CsvPart> purgeAudit() {
+        YearMonth retention = YearMonth.from(rep.dh().time().day()).minusMonths(auditRetention);
+        return audit.audit("Purge audit logs.", () -> {
+            // the queued log of the async write may have been started before the purge.
+            LocalDateTime repairFrom = rep.dh().time().date().toLocalDate().minusDays(1).atStartOfDay();
+            List<CsvPart> parts = new ArrayList<>();
+            parts.addAll(purgeAudit(retention,
+                    () -> AuditActor.firstDate(rep), from -> AuditActor.firstDate(rep, from), this::archiveAuditActor));
+            parts.addAll(purgeAudit(retention,
+                    () -> AuditEvent.firstDate(rep), from -> AuditEvent.firstDate(rep, from), this::archiveAuditEvent));
+            if (parts.isEmpty()) {
+                return parts;
+            }
+            // The log which was written during the purge may refer to the text whose terms were deleted.
+            TxTemplate.of(txm).tx(() -> {
+                AuditTerm.repair(rep, AuditActor.class, repairFrom);
+                AuditTerm.repair(rep, AuditEvent.class, repairFrom);
+            });
+            return parts;
+        });
+    }
+
+    /** Archive the months before the retention, jumping to the next month which has the log. */
+    private List<CsvPart> purgeAudit(YearMonth retention, Supplier<Optional<LocalDateTime>> firstDate,
+            Function<LocalDateTime, Optional<LocalDateTime>> nextDate, Function<YearMonth, List<CsvPart>> archive) {
+        List<CsvPart> parts = new ArrayList<>();
+        Optional<LocalDateTime> next = TxTemplate.of(txm).readOnly().tx(firstDate);
+        while (next.isPresent() && YearMonth.from(next.get()).isBefore(retention)) {
+            YearMonth month = YearMonth.from(next.get());
+            parts.addAll(TxTemplate.of(txm).tx(() -> archive.apply(month)));
+            LocalDateTime from = month.plusMonths(1).atDay(1).atStartOfDay();
+            next = TxTemplate.of(txm).readOnly().tx(() -> nextDate.apply(from));
+        }
+        return parts;
+    }
+
+    private List<CsvPart> archiveAuditActor(YearMonth month) {
+        CsvLayout layout = new CsvLayout();
+        layout.setHeader("id,actorId,roleType,source,category,message,statusType,errorReason,time,startDate,endDate");
+        layout.setEngine(CsvEngine.Buffered);
+        List<CsvPart> parts = report.writeCsvParts("audit-actor-" + month, layout, true,
+                stream -> AuditActor.scroll(rep, month, v -> stream.appendRow(Arrays.asList(
+                        v.getId(), v.getActorId(), v.getRoleType(), v.getSource(), v.getCategory(), v.getMessage(),
+                        v.getStatusType(), v.getErrorReason(), v.getTime(), v.getStartDate(), v.getEndDate()))));
+        AuditActor.purge(rep, month);
+        return parts;
+    }
+
+    private List<CsvPart> archiveAuditEvent(YearMonth month) {
+        CsvLayout layout = new CsvLayout();
+        layout.setHeader("id,category,message,statusType,errorReason,time,startDate,endDate");
+        layout.setEngine(CsvEngine.Buffered);
+        List<CsvPart> parts = report.writeCsvParts("audit-event-" + month, layout, true,
+                stream -> AuditEvent.scroll(rep, month, v -> stream.appendRow(Arrays.asList(
+                        v.getId(), v.getCategory(), v.getMessage(), v.getStatusType(), v.getErrorReason(),
+                        v.getTime(), v.getStartDate(), v.getEndDate()))));
+        AuditEvent.purge(rep, month);
+        return parts;
+    }
+
     public List<AppSetting> findAppSetting(FindAppSetting p) {
         return TxTemplate.of(txm).readOnly().tx(
                 () -> AppSetting.find(rep, p));
@@ -0,0 +1,126 @@
+package sample.context.audit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.time.*;
+import java.util.*;
+
+import org.junit.Test;
+
+import sample.EntityTestSupport;
+import sample.context.audit.AuditEvent.*;
+
+//low: Minimum test.
+public class AuditEventTest extends EntityTestSupport {
+
+    @Override
+    protected void setupPreset() {
+        targetEntities(AuditEvent.class, AuditTerm.class);
+    }
+
+    @Override
+    protected void before() {
+        tx(() -> {
+            for (String date : new String[] { "2016-01-31T23:59:59", "2016-02-01T00:00", "2016-02-29T12:00",
+                    "2016-03-01T00:00" }) {
+                AuditEvent event = RegAuditEvent.of("sample", "Event " + date).create(LocalDateTime.parse(date));
+                AuditTerm.index(rep, event);
+                event.save(rep);
+            }
+        });
+    }
+
+    @Test
+    public void findByKeyword() {
+        tx(() -> {
+            FindAuditEvent p = new FindAuditEvent();
+            p.setFromDay(LocalDate.of(2016, 1, 1));
+            p.setToDay(LocalDate.of(2016, 12, 31));
+            p.setKeyword("02-29");
+            assertThat(AuditEvent.find(rep, p).getList(), contains(hasProperty("message", is("Event 2016-02-29T12:00"))));
+            p.setKeyword("event 2016");
+            assertThat(AuditEvent.find(rep, p).getList(), empty()); // "like" is case sensitive
+            p.setKeyword("Event 2016");
+            assertThat(AuditEvent.find(rep, p).getList(), hasSize(4));
+            p.setKeyword("9");
+            assertThat(AuditEvent.find(rep, p).getList(), hasSize(2));
+            p.setKeyword("12:01");
+            assertThat(AuditEvent.find(rep, p).getList(), empty());
+        });
+    }
+
+    @Test
+    public void indexDistinctText() {
+        tx(() -> {
+            long terms = rep.tmpl().<Long>find("select count(t) from AuditTerm t").get(0);
+            for (int i = 0; i < 3; i++) {
+                AuditEvent event = RegAuditEvent.of("sample", "requesting a withdrawal").create(LocalDateTime.now());
+                AuditTerm.index(rep, event);
+                event.save(rep);
+            }
+            long added = rep.tmpl().<Long>find("select count(t) from AuditTerm t").get(0) - terms;
+            assertThat(added, is((long) AuditTerm.grams("requesting a withdrawal").size()));
+            FindAuditEvent p = new FindAuditEvent();
+            p.setFromDay(LocalDate.now());
+            p.setToDay(LocalDate.now());
+            p.setKeyword("withdraw");
+            assertThat(AuditEvent.find(rep, p).getList(), hasSize(3));
+        });
+    }
+
+    @Test
+    public void indexErrorReasonAtEnd() {
+        tx(() -> {
+            AuditEvent finished = AuditEvent.register(rep, RegAuditEvent.of("sample", "requesting a transfer"));
+            String messageHash = finished.getMessageHash();
+            assertThat(finished.finish(rep).getErrorReasonHash(), nullValue());
+            AuditEvent failed = AuditEvent.register(rep, RegAuditEvent.of("sample", "requesting a transfer"));
+            failed.error(rep, "insufficient balance");
+            assertThat(failed.getMessageHash(), is(messageHash));
+            assertThat(failed.getErrorReasonHash(), notNullValue());
+            FindAuditEvent p = new FindAuditEvent();
+            p.setFromDay(LocalDate.now());
+            p.setToDay(LocalDate.now());
+            p.setKeyword("balance");
+            assertThat(AuditEvent.find(rep, p).getList(), contains(hasProperty("id", is(failed.getId()))));
+        });
+    }
+
+    @Test
+    public void scrollAndPurgeByMonth() {
+        tx(() -> {
+            assertThat(AuditEvent.firstDate(rep), is(Optional.of(LocalDateTime.parse("2016-01-31T23:59:59"))));
+            assertThat(AuditEvent.firstDate(rep, LocalDateTime.parse("2016-02-01T00:01")),
+                    is(Optional.of(LocalDateTime.parse("2016-02-29T12:00"))));
+            List<String> messages = new ArrayList<>();
+            assertThat(AuditEvent.scroll(rep, YearMonth.of(2016, 2), v -> messages.add(v.getMessage())), is(2L));
+            assertThat(messages, contains("Event 2016-02-01T00:00", "Event 2016-02-29T12:00"));
+            assertThat(AuditEvent.purge(rep, YearMonth.of(2016, 2)), is(2));
+            assertThat(rep.tmpl().find("from AuditTerm t where t.gram='29'"), empty());
+            assertThat(AuditEvent.scroll(rep, YearMonth.of(2016, 2), v -> {}), is(0L));
+            assertThat(AuditEvent.scroll(rep, YearMonth.of(2016, 3), v -> {}), is(1L));
+        });
+    }
+
+    @Test
+    public void repairAfterPurge() {
+        tx(() -> {
+            // the log which is written during the purge refers to the text which only the purged logs had.
+            AuditEvent event = RegAuditEvent.of("sample", "Event 2016-02-29T12:00").create(LocalDateTime.now());
+            AuditTerm.index(rep, event);
+            AuditEvent.purge(rep, YearMonth.of(2016, 2));
+            event.save(rep);
+            FindAuditEvent p = new FindAuditEvent();
+            p.setFromDay(LocalDate.now());
+            p.setToDay(LocalDate.now());
+            p.setKeyword("02-29");
+            assertThat(AuditEvent.find(rep, p).getList(), empty());
+
+            assertThat(AuditTerm.repair(rep, AuditEvent.class, LocalDate.now().atStartOfDay()), is(1));
+            assertThat(AuditEvent.find(rep, p).getList(), contains(hasProperty("id", is(event.getId()))));
+            assertThat(AuditTerm.repair(rep, AuditEvent.class, LocalDate.now().atStartOfDay()), is(0));
+        });
+    }
+
+}
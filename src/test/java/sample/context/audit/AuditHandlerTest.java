@@ -0,0 +1,54 @@
+package sample.context.audit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import sample.*;
+import sample.context.audit.AuditHandler.AuditPersister;
+
+//low: Minimum test.
+public class AuditHandlerTest extends EntityTestSupport {
+
+    @Override
+    protected void setupPreset() {
+        targetEntities(AuditActor.class, AuditEvent.class, AuditTerm.class);
+    }
+
+    @Test
+    public void auditByPolicy() {
+        AuditPolicy policy = new AuditPolicy("always", "read=error, sample=sampled:2, trace=log", Optional.empty());
+        AuditHandler audit = new AuditHandler(session, new AuditPersister(rep, txm), policy);
+        for (String category : new String[] { "default", "read", "sample", "trace" }) {
+            for (int i = 0; i < 4; i++) {
+                audit.callEvent(category, "ok", () -> true);
+            }
+            try {
+                audit.callEvent(category, "ng", () -> {
+                    throw new ValidationException("ng");
+                });
+                fail();
+            } catch (ValidationException e) {
+            }
+        }
+        assertThat(count("default"), is(5L));
+        assertThat(count("read"), is(1L));
+        assertThat(count("sample"), is(3L));
+        assertThat(count("trace"), is(0L));
+        tx(() -> {
+            AuditEvent event = rep.tmpl().<AuditEvent> get(
+                    "from AuditEvent e where e.category=?1", "read").get();
+            assertThat(event.getStatusType(), is(ActionStatusType.Cancelled));
+            assertThat(event.getEndDate(), notNullValue());
+        });
+    }
+
+    private long count(String category) {
+        return tx(() -> rep.tmpl().<Long> load(
+                "select count(*) from AuditEvent e where e.category=?1", category));
+    }
+
+}
@@ -0,0 +1,99 @@
+package sample.context.audit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.Test;
+
+import sample.*;
+import sample.context.audit.AuditActor.RegAuditActor;
+import sample.context.audit.AuditEvent.RegAuditEvent;
+import sample.context.audit.AuditHandler.AuditPersister;
+
+//low: Minimum test.
+public class AuditWriterTest extends EntityTestSupport {
+
+    @Override
+    protected void setupPreset() {
+        targetEntities(AuditActor.class, AuditEvent.class, AuditTerm.class);
+    }
+
+    @Test
+    public void writeBehind() {
+        AuditWriter writer = new AuditWriter(rep, txm, 4, 3, Duration.ofMillis(10), Optional.empty());
+        AuditPersister persister = new AuditPersister(rep, txm, Optional.of(writer));
+        try {
+            for (int i = 0; i < 10; i++) {
+                AuditEvent event = persister.start(RegAuditEvent.of("sample", "event" + i));
+                if (i % 2 == 0) {
+                    persister.finish(event);
+                } else {
+                    persister.error(event, "error" + i);
+                }
+            }
+            persister.cancel(persister.start(RegAuditActor.of("sample", "actor")), "cancel");
+        } finally {
+            writer.close();
+        }
+        tx(() -> {
+            List<AuditEvent> events = rep.tmpl().find("from AuditEvent e order by e.message");
+            assertThat(events, hasSize(10));
+            assertTrue(events.stream().allMatch(v -> v.getEndDate() != null));
+            assertThat(events.get(0).getStatusType(), is(ActionStatusType.Processed));
+            assertThat(events.get(1).getStatusType(), is(ActionStatusType.Error));
+            assertThat(events.get(1).getErrorReason(), is("error1"));
+            List<AuditActor> actors = rep.tmpl().find("from AuditActor");
+            assertThat(actors, hasSize(1));
+            assertThat(actors.get(0).getStatusType(), is(ActionStatusType.Cancelled));
+        });
+    }
+
+    @Test(timeout = 60000)
+    public void backpressureByProducers() throws Exception {
+        AuditWriter writer = new AuditWriter(rep, txm, 2, 3, Duration.ofMillis(10), Optional.empty());
+        AuditPersister persister = new AuditPersister(rep, txm, Optional.of(writer));
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                final int producer = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 10; j++) {
+                        persister.finish(persister.start(RegAuditEvent.of("sample", "event" + producer + "-" + j)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            writer.close();
+        }
+        tx(() -> {
+            List<AuditEvent> events = rep.tmpl().find("from AuditEvent");
+            assertThat(events, hasSize(160));
+            assertTrue(events.stream().allMatch(v -> v.getStatusType() == ActionStatusType.Processed));
+        });
+    }
+
+    @Test(timeout = 60000)
+    public void writeAfterClose() {
+        AuditWriter writer = new AuditWriter(rep, txm, 2, 3, Duration.ofMillis(10), Optional.empty());
+        AuditPersister persister = new AuditPersister(rep, txm, Optional.of(writer));
+        AuditEvent event = persister.start(RegAuditEvent.of("sample", "before"));
+        writer.close();
+        persister.finish(event);
+        persister.finish(persister.start(RegAuditEvent.of("sample", "after")));
+        tx(() -> {
+            List<AuditEvent> events = rep.tmpl().find("from AuditEvent e order by e.message");
+            assertThat(events, hasSize(2));
+            assertTrue(events.stream().allMatch(v -> v.getStatusType() == ActionStatusType.Processed));
+        });
+    }
+
+}
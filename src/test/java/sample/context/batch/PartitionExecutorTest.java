@@ -0,0 +1,59 @@
+package sample.context.batch;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import sample.context.actor.*;
+import sample.context.actor.Actor.ActorRoleType;
+import sample.context.batch.PartitionExecutor.PartitionResult;
+
+//low: Minimum test.
+public class PartitionExecutorTest {
+
+    @Test
+    public void execute() {
+        ActorSession session = new ActorSession(Optional.empty(), "");
+        Actor actor = new Actor("admin", ActorRoleType.Administrator);
+        Map<String, List<Integer>> partitions = new LinkedHashMap<>();
+        partitions.put("a", Arrays.asList(1, 2, 3));
+        partitions.put("b", Arrays.asList(4, -5));
+        partitions.put("c", Arrays.asList(6, 7));
+
+        for (int parallelism : new int[] { 1, 4 }) {
+            PartitionExecutor executor = new PartitionExecutor(session, parallelism);
+            session.bind(actor);
+            try {
+                List<PartitionResult<String>> results = executor.execute(partitions, (key, items, result) -> {
+                    assertThat(session.actor(), is(actor));
+                    items.forEach(v -> {
+                        if (0 < v) {
+                            result.success();
+                        } else {
+                            result.error();
+                        }
+                    });
+                    if ("c".equals(key)) {
+                        throw new IllegalStateException();
+                    }
+                });
+                assertThat(results.size(), is(3));
+                assertThat(results.get(0).getKey(), is("a"));
+                assertThat(results.get(0).getSuccess(), is(3));
+                assertThat(results.get(1).getError(), is(1));
+                // all items are error when the partition failed.
+                assertThat(results.get(2).getSuccess(), is(0));
+                assertThat(results.get(2).getError(), is(2));
+                assertThat(PartitionResult.success(results), is(4));
+                assertThat(PartitionResult.error(results), is(3));
+            } finally {
+                session.unbind();
+                executor.close();
+            }
+        }
+    }
+
+}
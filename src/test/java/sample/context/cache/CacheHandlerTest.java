@@ -0,0 +1,72 @@
+package sample.context.cache;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import sample.EntityTestSupport;
+import sample.context.AppSetting;
+import sample.context.orm.TxTemplate;
+
+//low: Minimum test.
+public class CacheHandlerTest extends EntityTestSupport {
+    private final AtomicInteger loaded = new AtomicInteger();
+
+    @Override
+    protected void setupPreset() {
+        targetEntities(AppSetting.class);
+    }
+
+    @Test
+    public void changeOnCommit() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CacheHandler cache = new CacheHandler(true, 100, Duration.ofMinutes(1), Optional.of(registry));
+        assertThat(load(cache), is(10));
+        assertThat(load(cache), is(10));
+        assertThat(loaded.get(), is(1));
+
+        TxTemplate.of(txm).tx(() -> {
+            cache.<Integer> change("test", "key", v -> v + 5);
+            // the transaction which changes the key does not use the cache.
+            assertThat(load(cache), is(10));
+        });
+        assertThat(load(cache), is(15));
+        assertThat(loaded.get(), is(2));
+
+        try {
+            TxTemplate.of(txm).tx(() -> {
+                cache.<Integer> change("test", "key", v -> v + 5);
+                throw new IllegalStateException();
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            // rollback evicts the value.
+        }
+        assertThat(load(cache), is(10));
+        assertThat(loaded.get(), is(3));
+        assertThat(registry.get(CacheHandler.MetricGets).tag("result", "hit").counter().count(), is(2.0));
+        assertThat(registry.get(CacheHandler.MetricGets).tag("result", "miss").counter().count(), is(2.0));
+    }
+
+    @Test
+    public void disabled() {
+        CacheHandler cache = new CacheHandler(false, 100, Duration.ofMinutes(1), Optional.empty());
+        load(cache);
+        load(cache);
+        assertThat(loaded.get(), is(2));
+    }
+
+    private int load(CacheHandler cache) {
+        return cache.load("test", "key", () -> {
+            loaded.incrementAndGet();
+            return 10;
+        });
+    }
+
+}
@@ -0,0 +1,106 @@
+package sample.context.lock;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import sample.EntityTestSupport;
+import sample.context.lock.IdLockHandler.LockType;
+
+//low: Minimum test.
+public class DbLockEngineTest extends EntityTestSupport {
+    private DbLockEngine engine;
+
+    @Override
+    protected void setupPreset() {
+        targetEntities(IdLockEntry.class, IdLockLease.class);
+    }
+
+    @Override
+    protected void before() {
+        engine = new DbLockEngine(rep, txm, 16, "node1", Duration.ofSeconds(30), Duration.ofMillis(10));
+    }
+
+    @Test
+    public void leaseAndRelease() {
+        assertTrue(engine.tryLock("test1", LockType.Write));
+        // reentrant
+        assertTrue(engine.tryLock("test1", LockType.Write));
+        tx(() -> {
+            assertThat(IdLockLease.find(rep, "test1").size(), is(1));
+            assertTrue(rep.get(IdLockEntry.class, "test1").isPresent());
+        });
+        engine.unlock("test1");
+        tx(() -> assertThat(IdLockLease.find(rep, "test1").size(), is(1)));
+        engine.unlock("test1");
+        tx(() -> {
+            assertTrue(IdLockLease.find(rep, "test1").isEmpty());
+            assertFalse(rep.get(IdLockEntry.class, "test1").isPresent());
+        });
+    }
+
+    @Test
+    public void conflictWithOtherNode() throws Exception {
+        tx(() -> {
+            new IdLockEntry("test1", time.date()).save(rep);
+            new IdLockLease(null, "test1", "node2", "node2/1", LockType.Read, time.date().plusSeconds(30)).save(rep);
+        });
+        // read lease is shared
+        assertTrue(engine.tryLock("test1", LockType.Read));
+        engine.unlock("test1");
+        assertFalse(engine.tryLock("test1", LockType.Write));
+        assertFalse(engine.tryLock("test1", LockType.Write, 30, TimeUnit.MILLISECONDS));
+
+        // the lease which the crashed node left expires.
+        tx(() -> {
+            rep.tmpl().execute("update IdLockLease l set l.expireDate=?1", time.date().minusSeconds(1));
+        });
+        assertTrue(engine.tryLock("test1", LockType.Write));
+        tx(() -> assertThat(IdLockLease.find(rep, "test1").get(0).getNode(), is("node1")));
+        engine.unlock("test1");
+    }
+
+    @Test
+    public void heartbeat() {
+        engine.lock("test1", LockType.Write);
+        tx(() -> {
+            rep.tmpl().execute("update IdLockLease l set l.expireDate=?1", time.date().minusSeconds(1));
+        });
+        engine.heartbeat();
+        tx(() -> assertThat(IdLockLease.find(rep, "test1").get(0).getExpireDate(), greaterThan(time.date())));
+        engine.unlock("test1");
+    }
+
+    @Test
+    public void lostLease() throws Exception {
+        // the lease is removed by the other node.
+        engine.lock("test1", LockType.Write);
+        tx(() -> {
+            rep.tmpl().execute("delete from IdLockLease l");
+        });
+        engine.heartbeat();
+        try {
+            engine.unlock("test1");
+            fail();
+        } catch (IllegalMonitorStateException e) {
+        }
+        assertTrue(engine.tryLock("test1", LockType.Write));
+        engine.unlock("test1");
+
+        // the lease expires without the heartbeat.
+        DbLockEngine shortLease = new DbLockEngine(rep, txm, 16, "node1", Duration.ofMillis(1), Duration.ofMillis(10));
+        shortLease.lock("test2", LockType.Write);
+        TimeUnit.MILLISECONDS.sleep(5);
+        try {
+            shortLease.unlock("test2");
+            fail();
+        } catch (IllegalMonitorStateException e) {
+        }
+        tx(() -> assertTrue(IdLockLease.find(rep, "test2").isEmpty()));
+    }
+
+}
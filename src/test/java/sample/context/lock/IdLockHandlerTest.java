@@ -0,0 +1,162 @@
+package sample.context.lock;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import sample.ValidationException;
+import sample.ValidationException.ErrorKeys;
+import sample.context.lock.IdLockEngine.*;
+import sample.context.lock.IdLockHandler.*;
+
+//low: Minimum test.
+public class IdLockHandlerTest {
+
+    @Test
+    public void countingRemoveOnLastUnlock() {
+        CountingLockEngine engine = new CountingLockEngine(16);
+        IdLockHandler idLock = new IdLockHandler(engine, Optional.empty());
+
+        idLock.call("test1", LockType.Write, () -> {
+            assertThat(engine.size(), is(1));
+            // reentrant
+            idLock.call("test1", LockType.Write, () -> assertThat(engine.size(), is(1)));
+            idLock.call("test2", LockType.Read, () -> assertThat(engine.size(), is(2)));
+            assertThat(engine.size(), is(1));
+        });
+        assertThat(engine.size(), is(0));
+    }
+
+    @Test
+    public void stripedShareLock() {
+        StripedLockEngine engine = new StripedLockEngine(10);
+        assertThat(engine.stripes(), is(16));
+        assertThat(engine.stripe("test1"), is(IdLockEngine.stripe("test1", 16)));
+
+        IdLockHandler idLock = new IdLockHandler(engine, Optional.empty());
+        assertThat(idLock.call("test1", LockType.Read, () -> "ok"), is("ok"));
+    }
+
+    @Test
+    public void contention() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IdLockHandler idLock = new IdLockHandler(new CountingLockEngine(16), Optional.of(registry));
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> holder = executor.submit(() -> idLock.call("test1", LockType.Write, () -> {
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            locked.await();
+            new Thread(() -> {
+                sleep(100);
+                release.countDown();
+            }).start();
+            idLock.call("test1", LockType.Write, () -> true);
+            holder.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(registry.get(IdLockHandler.MetricContention).tag("type", "Write").counter().count(), is(1.0));
+        assertThat(registry.get(IdLockHandler.MetricWait).tag("type", "Write").timer().count(), is(2L));
+    }
+
+    @Test
+    public void tryCall() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CountingLockEngine engine = new CountingLockEngine(16);
+        IdLockHandler idLock = new IdLockHandler(engine, Optional.of(registry));
+        assertThat(idLock.tryCall("test1", LockType.Write, Duration.ZERO, () -> "ok"), is("ok"));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            idLock.call("test1", LockType.Write, () -> {
+                Future<?> other = executor.submit(() -> {
+                    try {
+                        idLock.tryCall("test1", LockType.Read, Duration.ofMillis(50), () -> fail());
+                        fail();
+                    } catch (ValidationException e) {
+                        assertThat(e.getMessage(), is(ErrorKeys.IdLockTimeout));
+                    }
+                });
+                try {
+                    other.get();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                // The lock of the timeout is not left in the lock table.
+                assertThat(engine.size(), is(1));
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(engine.size(), is(0));
+        assertThat(registry.get(IdLockHandler.MetricTimeout).tag("type", "Read").counter().count(), is(1.0));
+        assertThat(registry.get(IdLockHandler.MetricHold).tag("type", "Write").timer().count(), is(2L));
+    }
+
+    @Test
+    public void callAll() throws Exception {
+        StripedLockEngine striped = new StripedLockEngine(2);
+        IdLockHandler stripedLock = new IdLockHandler(striped, Optional.empty());
+        String other = "test2";
+        for (int i = 3; striped.stripe(other) != striped.stripe("test1"); i++) {
+            other = "test" + i;
+        }
+        // the read lock and the write lock of the same stripe are acquired once.
+        assertThat(stripedLock.callAll(Arrays.asList(
+                IdLockPair.read("test1"), IdLockPair.write(other)), () -> "ok"), is("ok"));
+
+        CountingLockEngine engine = new CountingLockEngine(16);
+        IdLockHandler idLock = new IdLockHandler(engine, Optional.empty());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            idLock.call("test2", LockType.Write, () -> {
+                Future<?> future = executor.submit(() -> {
+                    try {
+                        idLock.tryCallAll(Arrays.asList(IdLockPair.write("test2"), IdLockPair.write("test1")),
+                                Duration.ofMillis(50), () -> fail());
+                        fail();
+                    } catch (ValidationException e) {
+                        assertThat(e.getMessage(), is(ErrorKeys.IdLockTimeout));
+                    }
+                });
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                // "test1" acquired before "test2" is released.
+                assertThat(engine.size(), is(1));
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(idLock.callAll(Arrays.asList(IdLockPair.write("test2"), IdLockPair.read("test1")), () -> {
+            assertThat(engine.size(), is(2));
+            return "ok";
+        }), is("ok"));
+        assertThat(engine.size(), is(0));
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package sample.context.orm;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import sample.EntityTestSupport;
+import sample.context.*;
+import sample.context.cache.CacheHandler;
+import sample.model.master.Holiday;
+
+//low: Minimum test.
+public class OrmQueryCacheTest extends EntityTestSupport {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Override
+    protected void setupPreset() {
+        targetEntities(Holiday.class);
+    }
+
+    @Override
+    protected void setupRepository() {
+        dh = new DomainHelper(
+                SimpleProvider.of(session),
+                SimpleProvider.of(time),
+                SimpleProvider.of(new AppSettingHandler(new HashMap<>())),
+                SimpleProvider.of(new CacheHandler(true, 100, Duration.ofMinutes(1), Optional.of(registry))));
+        super.setupRepository();
+    }
+
+    @Override
+    protected void before() {
+        tx(() -> {
+            fixtures.holiday("2016-01-01").save(rep);
+            fixtures.holiday("2016-01-02").save(rep);
+        });
+    }
+
+    @Test
+    public void findWithCache() {
+        assertThat(tx(() -> Holiday.find(rep, 2016)), hasSize(2));
+        assertThat(tx(() -> Holiday.find(rep, 2016)), hasSize(2));
+        assertThat(gets("hit"), is(1.0));
+
+        // the transaction which changes the entity does not use the cache, and the change evicts it on the end.
+        tx(() -> {
+            fixtures.holiday("2016-01-03").save(rep);
+            assertThat(Holiday.find(rep, 2016), hasSize(3));
+        });
+        assertThat(tx(() -> Holiday.find(rep, 2016)), hasSize(3));
+        assertThat(gets("hit"), is(1.0));
+
+        // the bulk delete evicts it too.
+        tx(() -> rep.tmpl().execute("delete from Holiday h where h.day=?1", LocalDate.of(2016, 1, 3)));
+        assertThat(tx(() -> Holiday.find(rep, 2016)), hasSize(2));
+        assertThat(tx(() -> Holiday.find(rep, 2016)), hasSize(2));
+        assertThat(gets("hit"), is(2.0));
+    }
+
+    @Test
+    public void ignoreUncachedEntity() {
+        // the change of the entity which no cached JPQL refers to does not create the region.
+        tx(() -> fixtures.holiday("2016-01-03").save(rep));
+        assertThat(registry.find(CacheHandler.MetricSize).tag("cache", "query:Holiday").gauge(), nullValue());
+
+        assertThat(tx(() -> Holiday.find(rep, 2016)), hasSize(3));
+        tx(() -> fixtures.holiday("2016-01-04").save(rep));
+        assertThat(tx(() -> Holiday.find(rep, 2016)), hasSize(4));
+        assertThat(gets("hit"), is(0.0));
+    }
+
+    @Test
+    public void sessionInstances() {
+        Holiday first = tx(() -> Holiday.find(rep, 2016).get(0));
+        tx(() -> {
+            List<Holiday> list = Holiday.find(rep, 2016);
+            assertThat(gets("hit"), is(1.0));
+            // the cached result is loaded on the session of the caller.
+            assertThat(list.get(0), not(sameInstance(first)));
+            assertThat(rep.em().contains(list.get(0)), is(true));
+            assertThat(list.get(0).getDay(), is(first.getDay()));
+        });
+    }
+
+    @Test
+    public void changeOfOtherTransaction() throws Exception {
+        CountDownLatch changed = new CountDownLatch(1);
+        CountDownLatch found = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> other = executor.submit(() -> tx(() -> {
+                fixtures.holiday("2016-01-03").save(rep);
+                rep.flush();
+                changed.countDown();
+                await(found);
+            }));
+            await(changed);
+            // the first find during the change of the other transaction is not cached.
+            assertThat(tx(() -> Holiday.find(rep, 2016)), hasSize(2));
+            found.countDown();
+            other.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(tx(() -> Holiday.find(rep, 2016)), hasSize(3));
+        assertThat(gets("hit"), is(0.0));
+    }
+
+    @Test
+    public void rollbackInTransaction() {
+        try {
+            tx(() -> {
+                fixtures.holiday("2016-01-03").save(rep);
+                assertThat(Holiday.find(rep, 2016), hasSize(3));
+                throw new IllegalStateException("rollback");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("rollback"));
+        }
+        assertThat(tx(() -> Holiday.find(rep, 2016)), hasSize(2));
+        assertThat(tx(() -> Holiday.find(rep, 2016)), hasSize(2));
+        assertThat(gets("hit"), is(1.0));
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double gets(String result) {
+        return registry.get(CacheHandler.MetricGets).tag("cache", "query:Holiday").tag("result", result)
+                .counter().count();
+    }
+
+}
@@ -0,0 +1,59 @@
+package sample.context.report;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import javax.validation.Validation;
+
+import org.junit.Test;
+
+import sample.EntityTestSupport;
+import sample.ValidationException;
+import sample.context.report.ImportHandler.ImportResult;
+import sample.context.report.csv.CsvReader;
+import sample.model.master.Holiday;
+import sample.model.master.Holiday.*;
+
+//low: Minimum test.
+public class ImportHandlerTest extends EntityTestSupport {
+
+    @Override
+    protected void setupPreset() {
+        targetEntities(Holiday.class);
+    }
+
+    @Test
+    public void importCsv() {
+        ImportHandler handler = new ImportHandler(Validation.buildDefaultValidatorFactory(), 2, 10);
+        String csv = String.join("\r\n",
+                "2016-01-01,newYear",
+                "2016-01-02,",
+                "2016-99-01,badDay",
+                "2016-01-04,error",
+                "2016-01-05,ok",
+                "2016-01-06,ok");
+        RegHoliday p = new RegHoliday(2016, null);
+        ImportResult result = handler.importCsv(
+                CsvReader.of(csv.getBytes(StandardCharsets.UTF_8)), rep, txm,
+                cols -> new RegHolidayItem(LocalDate.parse(cols.get(0)), cols.get(1)),
+                item -> {
+                    if ("error".equals(item.getName())) {
+                        throw new ValidationException("name", "error.test");
+                    }
+                    item.create(p).save(rep);
+                });
+        assertThat(result.getTotal(), is(6));
+        assertThat(result.getSuccess(), is(3));
+        assertThat(result.getError(), is(3));
+        assertThat(result.getErrors().get(0).getLineNum(), is(2));
+        assertThat(result.getErrors().get(0).getWarns().get(0).getField(), is("name"));
+        assertThat(result.getErrors().get(1).getLineNum(), is(3));
+        assertThat(result.getErrors().get(2).getLineNum(), is(4));
+        assertThat(result.getErrors().get(2).getWarns().get(0).getMessage(), is("error.test"));
+        tx(() -> assertThat(Holiday.find(rep, 2016), hasSize(3)));
+    }
+
+}
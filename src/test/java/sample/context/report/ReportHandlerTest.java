@@ -0,0 +1,74 @@
+package sample.context.report;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import sample.EntityTestSupport;
+import sample.context.orm.OrmQueryMetadata;
+import sample.context.report.csv.CsvLayout;
+import sample.model.master.Holiday;
+
+//low: Minimum test.
+public class ReportHandlerTest extends EntityTestSupport {
+
+    @Override
+    protected void setupPreset() {
+        targetEntities(Holiday.class);
+    }
+
+    @Override
+    protected void before() {
+        tx(() -> {
+            for (int i = 1; i <= 5; i++) {
+                fixtures.holiday("2016-01-0" + i).save(rep);
+            }
+        });
+    }
+
+    @Test
+    public void exportCsv() {
+        ReportHandler handler = new ReportHandler(1, "build/export", 0, 0, false);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            CsvLayout layout = new CsvLayout();
+            layout.setHeader("day");
+            long count = tx(() -> handler.<Holiday> exportCsv(
+                    consumer -> rep.tmpl(OrmQueryMetadata.withFetchSize(2)).scroll(
+                            "from Holiday h order by h.day", consumer),
+                    v -> Arrays.asList(v.getDay()), layout, out));
+            assertThat(count, is(5L));
+            String csv = new String(out.toByteArray(), StandardCharsets.UTF_8);
+            assertThat(csv, startsWith("\"day\"\r\n2016-01-01\r\n2016-01-02\r\n"));
+            assertThat(csv, endsWith("2016-01-05\r\n"));
+        } finally {
+            handler.close();
+        }
+    }
+
+    @Test
+    public void streamCsv() {
+        ReportHandler handler = new ReportHandler(1, "build/export", 0, 0, false);
+        try {
+            CsvLayout layout = new CsvLayout();
+            layout.setHeader("day");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            handler.<Holiday> streamCsv(
+                    () -> rep.openCursor(OrmQueryMetadata.withFetchSize(2),
+                            tmpl -> tmpl.cursor("from Holiday h order by h.day")),
+                    v -> Arrays.asList(v.getDay()), layout)
+                    .blockingForEach(out::write);
+            String csv = new String(out.toByteArray(), StandardCharsets.UTF_8);
+            assertThat(csv, startsWith("\"day\"\r\n2016-01-01\r\n"));
+            assertThat(csv, endsWith("2016-01-05\r\n"));
+        } finally {
+            handler.close();
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package sample.context.report.csv;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.Test;
+
+import sample.context.report.csv.CsvLayout.CsvEngine;
+
+//low: Minimum test.
+public class CsvParallelReaderTest {
+
+    @Test
+    public void read() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String charset : new String[] { "UTF-8", "Shift_JIS" }) {
+                CsvLayout layout = new CsvLayout();
+                layout.setCharset(charset);
+                layout.setHeader("id,name,remark");
+                layout.setEngine(CsvEngine.Buffered);
+                byte[] data = data(layout, 60000);
+                List<String> expected = new ArrayList<>();
+                CsvReader.of(data, layout).read((lineNum, cols) -> expected.add(lineNum + ":" + cols));
+
+                CsvParallelReader reader = CsvParallelReader.of(data, layout, pool);
+                assertThat(reader.split(CsvScanner.ByteWindows.of(data), data.length).size(), greaterThan(1));
+                List<String> ordered = new ArrayList<>();
+                reader.readOrdered((lineNum, cols) -> ordered.add(lineNum + ":" + cols));
+                assertThat(ordered, is(expected));
+
+                Map<Integer, String> unordered = new ConcurrentSkipListMap<>();
+                reader.readUnordered((lineNum, cols) -> unordered.put(lineNum, lineNum + ":" + cols));
+                assertThat(new ArrayList<>(unordered.values()), is(expected));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private byte[] data(CsvLayout layout, int rows) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CsvWriter.of(out, layout).write(stream -> {
+            for (int i = 0; i < rows; i++) {
+                stream.appendRow(Arrays.asList(i, "名前" + i, i % 3 == 0 ? "say \"hi\",\r\n改行" : "remark"));
+            }
+        });
+        return out.toByteArray();
+    }
+
+}
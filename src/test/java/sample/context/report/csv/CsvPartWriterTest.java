@@ -0,0 +1,71 @@
+package sample.context.report.csv;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import sample.context.report.csv.CsvLayout.CsvEngine;
+import sample.context.report.csv.CsvPartWriter.CsvPart;
+
+//low: Minimum test.
+public class CsvPartWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeByRows() throws Exception {
+        File dir = folder.newFolder();
+        CsvLayout layout = new CsvLayout();
+        layout.setHeader("id,name");
+        layout.setEngine(CsvEngine.Buffered);
+        List<CsvPart> parts = CsvPartWriter.of(dir, "sample", layout).maxRows(10).compress().write(stream -> {
+            for (int i = 0; i < 25; i++) {
+                stream.appendRow(Arrays.asList(i, "name" + i));
+            }
+        });
+        assertThat(parts, hasSize(3));
+        assertThat(parts.get(0).getFile(), is("sample-00001.csv.gz"));
+        assertThat(parts.get(2).getRows(), is(5L));
+
+        List<String> rows = new ArrayList<>();
+        for (CsvPart part : parts) {
+            try (InputStream in = new GZIPInputStream(new FileInputStream(new File(dir, part.getFile())))) {
+                CsvReader.of(in, layout).read((lineNum, cols) -> rows.add(cols.get(0)));
+            }
+        }
+        assertThat(rows, hasSize(25));
+        assertThat(rows.get(24), is("24"));
+
+        List<List<String>> manifest = new ArrayList<>();
+        CsvLayout manifestLayout = new CsvLayout();
+        manifestLayout.setHeader("file,rows,bytes");
+        CsvReader.of(new FileInputStream(new File(dir, "sample.manifest.csv")), manifestLayout)
+                .read((lineNum, cols) -> manifest.add(cols));
+        assertThat(manifest, hasSize(3));
+        assertThat(manifest.get(1), contains("sample-00002.csv.gz", "10",
+                String.valueOf(new File(dir, "sample-00002.csv.gz").length())));
+    }
+
+    @Test
+    public void writeByBytes() throws Exception {
+        File dir = folder.newFolder();
+        List<CsvPart> parts = CsvPartWriter.of(dir, "sample").maxBytes(30).write(stream -> {
+            for (int i = 0; i < 10; i++) {
+                stream.appendRow(Arrays.asList("0123456789"));
+            }
+        });
+        // 14 bytes per row, so the part is rotated after 3 rows
+        assertThat(parts, hasSize(4));
+        assertThat(parts.get(0).getRows(), is(3L));
+        assertThat(parts.get(0).getBytes(), is(42L));
+        assertThat(parts.get(3).getRows(), is(1L));
+    }
+
+}
@@ -0,0 +1,110 @@
+package sample.context.report.csv;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.Test;
+
+import sample.context.report.csv.CsvLayout.CsvEngine;
+
+//low: Minimum test.
+public class CsvReaderTest {
+
+    private static final String[] samples = new String[] {
+            "a,b,c\r\n1,2,3\r\n",
+            "a,,\r\n\r\n,b\r\nlast",
+            "\"a\",\"b,c\",\"d\"\"e\",\"f\r\ng\"\r\n\"\",x\"y\r\n",
+            "\"say \"\"hi\"\", ok\",\"\"\"q\"\" x\"\r\n",
+            "日本語,\"カラム,1\",ｶﾅ\r\nテスト,\"改行\r\nあり\",end\r\n",
+            "\"unterminated,a\r\nb,c\r\n", };
+
+    @Test
+    public void readSameAsStandard() {
+        for (String sample : samples) {
+            for (String charset : new String[] { "UTF-8", "Shift_JIS" }) {
+                CsvLayout layout = new CsvLayout();
+                layout.setCharset(charset);
+                assertThat(sample, read(sample, layout, CsvEngine.Buffered), is(read(sample, layout, CsvEngine.Standard)));
+            }
+            CsvLayout header = new CsvLayout();
+            header.setHeader("a,b,c");
+            assertThat(sample, read(sample, header, CsvEngine.Buffered), is(read(sample, header, CsvEngine.Standard)));
+            CsvLayout nonQuote = new CsvLayout();
+            nonQuote.setNonQuote(true);
+            assertThat(sample, read(sample, nonQuote, CsvEngine.Buffered), is(read(sample, nonQuote, CsvEngine.Standard)));
+            CsvLayout lf = new CsvLayout();
+            lf.setEolSymbols("\n");
+            assertThat(sample, read(sample, lf, CsvEngine.Buffered), is(read(sample, lf, CsvEngine.Standard)));
+        }
+    }
+
+    @Test
+    public void readOddQuoteSequence() {
+        for (String sample : new String[] { "\"a\"\"\"\r\nb,c\r\n", "\"a\"\"\",b\r\n\"c\"\r\nd\r\n",
+                "x,\"\"\"\"\"\r\ny\"\r\nz\r\n" }) {
+            CsvLayout layout = new CsvLayout();
+            assertThat(sample, read(sample, layout, CsvEngine.Buffered), is(read(sample, layout, CsvEngine.Standard)));
+        }
+        // the EOL after '"""' is in the row.
+        assertThat(read("\"a\"\"\"\r\nb,c\r\n", new CsvLayout(), CsvEngine.Buffered),
+                contains(Arrays.asList("\"a\"\"\"\r\nb", "c")));
+    }
+
+    @Test
+    public void readBuffered() {
+        CsvLayout layout = new CsvLayout();
+        layout.setEngine(CsvEngine.Buffered);
+        List<List<String>> rows = read("\"a\"\"b\",😀,b😀\r\n\"\"\"x\"\r\n", layout, CsvEngine.Buffered);
+        assertThat(rows, contains(Arrays.asList("a\"b", "😀", "b😀"), Arrays.asList("\"x")));
+        assertThat(CsvReader.of(new byte[0], layout).parseRow("\"x,y\",z"), contains("x,y", "z"));
+    }
+
+    @Test
+    public void readPath() throws IOException {
+        String sample = String.join("", samples) + "😀,\"b😀\"\r\n";
+        Path path = Files.createTempFile("sample", ".csv");
+        try {
+            for (String charset : new String[] { "UTF-8", "Shift_JIS" }) {
+                CsvLayout layout = new CsvLayout();
+                layout.setCharset(charset);
+                String v = "UTF-8".equals(charset) ? sample : String.join("", samples);
+                Files.write(path, v.getBytes(Charset.forName(charset)));
+                List<List<String>> expected = read(v, layout, CsvEngine.Buffered);
+                List<List<String>> rows = new ArrayList<>();
+                CsvReader.of(path, layout).read((lineNum, cols) -> rows.add(cols));
+                assertThat(rows, is(expected));
+                // the Standard engine reads the file as the stream.
+                List<List<String>> standard = read(v, layout, CsvEngine.Standard);
+                rows.clear();
+                CsvReader.of(path, layout).read((lineNum, cols) -> rows.add(cols));
+                assertThat(rows, is(standard));
+                layout.setEngine(CsvEngine.Buffered);
+                // the char which spans the windows.
+                try (FileChannel channel = FileChannel.open(path)) {
+                    rows.clear();
+                    new CsvScanner(layout, 5).read(channel, Charset.forName(charset), (lineNum, cols) -> rows.add(cols));
+                    assertThat(rows, is(expected));
+                }
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private List<List<String>> read(String sample, CsvLayout layout, CsvEngine engine) {
+        layout.setEngine(engine);
+        List<List<String>> rows = new ArrayList<>();
+        CsvReader.of(sample.getBytes(Charset.forName(layout.getCharset())), layout).read((lineNum, cols) -> {
+            assertThat(lineNum, is(rows.size() + 1));
+            rows.add(cols);
+        });
+        return rows;
+    }
+
+}
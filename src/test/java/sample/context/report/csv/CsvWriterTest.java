@@ -0,0 +1,67 @@
+package sample.context.report.csv;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.*;
+import java.util.*;
+
+import org.junit.Test;
+
+import sample.ActionStatusType;
+import sample.context.report.csv.CsvLayout.CsvEngine;
+import sample.context.report.csv.CsvWriter.CsvStream;
+
+//low: Minimum test.
+public class CsvWriterTest {
+
+    @Test
+    public void writeSameAsStandard() {
+        List<List<Object>> rows = Arrays.asList(
+                Arrays.asList("plain", "say \"hi\"", "a,\"b\"", "line\r\nbreak", "", null),
+                Arrays.asList(0, -12L, Long.MIN_VALUE, (short) 7, new BigDecimal("1234.50"), new BigDecimal("1E+3")),
+                Arrays.asList(LocalDate.of(2016, 1, 2), LocalDateTime.of(2016, 1, 2, 3, 4),
+                        LocalDateTime.of(2016, 1, 2, 3, 4, 5), LocalDateTime.of(2016, 1, 2, 3, 4, 5, 6_000_000),
+                        LocalDateTime.of(2016, 1, 2, 3, 4, 0, 7_000), LocalDateTime.of(2016, 1, 2, 3, 4, 0, 8)),
+                Arrays.asList("日本語", "サロゲート𠮷", ActionStatusType.Processed, true, 1.5d));
+        for (String charset : new String[] { "UTF-8", "Shift_JIS" }) {
+            CsvLayout layout = new CsvLayout();
+            layout.setCharset(charset);
+            layout.setHeader("a,b,c,d,e,f");
+            byte[] expected = write(layout, rows);
+            layout.setEngine(CsvEngine.Buffered);
+            assertThat(write(layout, rows), is(expected));
+            for (int size : new int[] { 16, 17, 64 }) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                CsvEncoder encoder = new CsvEncoder(layout, out, size);
+                encoder.appendRow(layout.headerCols());
+                rows.forEach(encoder::appendRow);
+                encoder.flush();
+                assertThat(out.toByteArray(), is(expected));
+            }
+        }
+    }
+
+    @Test
+    public void flushInTheMiddle() {
+        CsvLayout layout = new CsvLayout();
+        layout.setEngine(CsvEngine.Buffered);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CsvStream stream = new CsvStream(layout, out);
+        stream.appendRow(Arrays.asList("a", 1));
+        assertThat(out.size(), is(0));
+        stream.flush();
+        assertThat(out.toString(), is("\"a\",1\r\n"));
+        stream.appendRow(Arrays.asList("b", 2)).flush();
+        assertThat(out.toString(), is("\"a\",1\r\n\"b\",2\r\n"));
+    }
+
+    private byte[] write(CsvLayout layout, List<List<Object>> rows) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CsvWriter.of(out, layout).write(stream -> rows.forEach(stream::appendRow));
+        return out.toByteArray();
+    }
+
+}
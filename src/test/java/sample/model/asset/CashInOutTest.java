@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.*;
 
 import org.junit.Test;
 
@@ -61,6 +62,25 @@ public class CashInOutTest extends EntityTestSupport {
         });
     }
 
+    @Test
+    public void findUnprocessedIds() {
+        LocalDate baseDay = businessDay.day();
+        tx(() -> {
+            fixtures.cio(accId, "300", true).save(rep);
+            CashInOut today = fixtures.cio(accId, "300", true);
+            today.setEventDay(baseDay);
+            today.save(rep);
+            CashInOut other = fixtures.cio("other", "200", true);
+            other.setEventDay(baseDay);
+            other.save(rep);
+            Map<String, List<Long>> ids = CashInOut.findUnprocessedIds(rep);
+            assertThat(ids.keySet(), contains(accId, "other"));
+            assertThat(ids, allOf(
+                    hasEntry(accId, Arrays.asList(today.getId())),
+                    hasEntry("other", Arrays.asList(other.getId()))));
+        });
+    }
+
     private FindCashInOut findParam(LocalDate fromDay, LocalDate toDay, ActionStatusType... statusTypes) {
         return new FindCashInOut(ccy, statusTypes, fromDay, toDay);
     }
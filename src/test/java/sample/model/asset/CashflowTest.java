@@ -5,6 +5,8 @@ import static org.junit.Assert.*;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
@@ -94,4 +96,85 @@ public class CashflowTest extends EntityTestSupport {
         });
     }
 
+    @Test
+    public void findDoRealize() {
+        LocalDate baseDay = businessDay.day();
+        LocalDate basePlus1Day = businessDay.day(1);
+        tx(() -> {
+            Long id1 = fixtures.cf("test1", "1000", baseDay, basePlus1Day).save(rep).getId();
+            Long id2 = fixtures.cf("test2", "2000", baseDay, basePlus1Day).save(rep).getId();
+            Long id3 = fixtures.cf("test1", "3000", baseDay, basePlus1Day).save(rep).getId();
+            fixtures.cf("test1", "4000", baseDay, baseDay).save(rep);
+
+            List<Cashflow> page1 = Cashflow.findDoRealize(rep, basePlus1Day, 0L, 2);
+            assertThat(page1.stream().map(Cashflow::getId).collect(Collectors.toList()), contains(id1, id2));
+            List<Cashflow> page2 = Cashflow.findDoRealize(rep, basePlus1Day, id2, 2);
+            assertThat(page2.stream().map(Cashflow::getId).collect(Collectors.toList()), contains(id3));
+            assertTrue(Cashflow.findDoRealize(rep, basePlus1Day, id3, 2).isEmpty());
+        });
+    }
+
+    @Test
+    public void realizeAll() {
+        LocalDate baseDay = businessDay.day();
+        LocalDate baseMinus1Day = businessDay.day(-1);
+        LocalDate basePlus1Day = businessDay.day(1);
+        tx(() -> {
+            CashBalance.getOrNew(rep, "test1", "JPY");
+            List<Cashflow> list = Arrays.asList(
+                    fixtures.cf("test1", "1000", baseMinus1Day, baseDay).save(rep),
+                    fixtures.cf("test1", "-300", baseMinus1Day, baseDay).save(rep));
+            Cashflow cfFuture = fixtures.cf("test1", "500", baseDay, basePlus1Day).save(rep);
+
+            // Value day of non-arrival. [ValidationException]
+            try {
+                Cashflow.realizeAll(rep, "test1", "JPY", Arrays.asList(list.get(0), cfFuture));
+                fail();
+            } catch (ValidationException e) {
+                assertThat(e.getMessage(), is(AssetErrorKeys.CashflowRealizeDay));
+            }
+
+            Cashflow.realizeAll(rep, "test1", "JPY", list);
+            rep.flushAndClear();
+            assertThat(Cashflow.load(rep, list.get(0).getId()).getStatusType(), is(ActionStatusType.Processed));
+            assertThat(Cashflow.load(rep, list.get(1).getId()).getStatusType(), is(ActionStatusType.Processed));
+            assertThat(CashBalance.getOrNew(rep, "test1", "JPY").getAmount(), comparesEqualTo(new BigDecimal("700")));
+
+            // Already processed. [ValidationException]
+            try {
+                Cashflow.realizeAll(rep, "test1", "JPY", Arrays.asList(Cashflow.load(rep, list.get(0).getId())));
+                fail();
+            } catch (ValidationException e) {
+                assertThat(e.getMessage(), is(ErrorKeys.ActionUnprocessing));
+            }
+        });
+    }
+
+    @Test
+    public void retryErrorOnRerun() {
+        LocalDate baseDay = businessDay.day();
+        LocalDate baseMinus1Day = businessDay.day(-1);
+        Long id1 = tx(() -> {
+            CashBalance.getOrNew(rep, "test1", "JPY");
+            Long id = fixtures.cf("test1", "1000", baseMinus1Day, baseDay).save(rep).getId();
+            fixtures.cf("test1", "2000", baseMinus1Day, baseDay).save(rep);
+            return id;
+        });
+        // The first execution fails on the first cashflow.
+        tx(() -> {
+            List<Cashflow> page = Cashflow.findDoRealize(rep, baseDay, 0L, 10);
+            assertThat(page, hasSize(2));
+            page.get(0).error(rep);
+            page.get(1).realize(rep);
+        });
+        // The re-execution of the same day reads from the first id again and retries it.
+        tx(() -> {
+            List<Cashflow> page = Cashflow.findDoRealize(rep, baseDay, 0L, 10);
+            assertThat(page.stream().map(Cashflow::getId).collect(Collectors.toList()), contains(id1));
+            assertThat(page.get(0).realize(rep).getStatusType(), is(ActionStatusType.Processed));
+            assertTrue(Cashflow.findDoRealize(rep, baseDay, 0L, 10).isEmpty());
+            assertThat(CashBalance.getOrNew(rep, "test1", "JPY").getAmount(), is(new BigDecimal("3000")));
+        });
+    }
+
 }
@@ -0,0 +1,126 @@
+package sample.model.asset;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import sample.EntityTestSupport;
+import sample.context.*;
+import sample.context.cache.CacheHandler;
+import sample.model.account.*;
+import sample.model.asset.CashInOut.RegCashOut;
+import sample.model.master.SelfFiAccount;
+
+//low: Minimum test.
+public class ProjectedBalanceTest extends EntityTestSupport {
+
+    private static final String ccy = "JPY";
+    private static final String accId = "test";
+
+    @Override
+    protected void setupPreset() {
+        targetEntities(Account.class, FiAccount.class, SelfFiAccount.class,
+                CashInOut.class, Cashflow.class, CashBalance.class);
+    }
+
+    @Override
+    protected void setupRepository() {
+        dh = new DomainHelper(
+                SimpleProvider.of(session),
+                SimpleProvider.of(time),
+                SimpleProvider.of(new AppSettingHandler(new HashMap<>())),
+                SimpleProvider.of(new CacheHandler(true, 100, Duration.ofMinutes(1), Optional.empty())));
+        super.setupRepository();
+    }
+
+    @Override
+    public void before() {
+        LocalDate baseDay = businessDay.day();
+        tx(() -> {
+            fixtures.selfFiAcc(Remarks.CashOut, ccy).save(rep);
+            fixtures.acc(accId).save(rep);
+            fixtures.fiAcc(accId, Remarks.CashOut, ccy).save(rep);
+            fixtures.cb(accId, baseDay, ccy, "10000").save(rep);
+            fixtures.cf(accId, "500", businessDay.day(-1), baseDay).save(rep);
+            fixtures.cf(accId, "-300", baseDay, businessDay.day(2)).save(rep);
+            fixtures.cio(accId, "700", true).save(rep);
+        });
+    }
+
+    @Test
+    public void maintainByDelta() {
+        LocalDate baseDay = businessDay.day();
+        assertProjected(false); // the first load
+
+        // withdraw
+        CashInOut cio1 = tx(() -> CashInOut.withdraw(rep, businessDay,
+                new RegCashOut(accId, ccy, new BigDecimal("1000"))));
+        assertProjected(true);
+        CashInOut cio2 = tx(() -> CashInOut.withdraw(rep, businessDay,
+                new RegCashOut(accId, ccy, new BigDecimal("2000"))));
+        assertProjected(true);
+
+        // error / cancel
+        tx(() -> CashInOut.load(rep, cio2.getId()).error(rep));
+        assertProjected(true);
+        tx(() -> CashInOut.findUnprocessed(rep, accId, ccy, true).stream()
+                .filter(v -> businessDay.day(1).equals(v.getEventDay()))
+                .forEach(v -> v.cancel(rep)));
+        assertProjected(true);
+
+        // process
+        tx(() -> CashInOut.load(rep, cio1.getId()).process(rep));
+        assertProjected(true);
+
+        // realize
+        tx(() -> Cashflow.findDoRealize(rep, baseDay).forEach(cf -> cf.realize(rep)));
+        assertProjected(true);
+        assertThat(tx(() -> Asset.by(accId).canWithdraw(rep, ccy, new BigDecimal("7200"), businessDay.day(3))),
+                is(true));
+        assertThat(tx(() -> Asset.by(accId).canWithdraw(rep, ccy, new BigDecimal("7201"), businessDay.day(3))),
+                is(false));
+    }
+
+    @Test
+    public void evictOnRollback() {
+        assertProjected(false);
+        try {
+            tx(() -> {
+                CashInOut.withdraw(rep, businessDay, new RegCashOut(accId, ccy, new BigDecimal("1000")));
+                throw new IllegalStateException("rollback");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("rollback"));
+        }
+        assertProjected(false); // the key was evicted, so it is loaded again
+        assertProjected(true);
+    }
+
+    /** Assert the cached projection equals the one loaded from DB. */
+    private void assertProjected(boolean cached) {
+        tx(() -> {
+            AtomicBoolean loaded = new AtomicBoolean(false);
+            rep.dh().cache().load(ProjectedBalance.CacheRegion, Arrays.asList(accId, ccy), () -> {
+                loaded.set(true);
+                return ProjectedBalance.load(rep, accId, ccy);
+            });
+            assertThat(loaded.get(), is(!cached));
+            ProjectedBalance v = ProjectedBalance.get(rep, accId, ccy);
+            ProjectedBalance expected = ProjectedBalance.load(rep, accId, ccy);
+            assertThat(v.getBalance(), comparesEqualTo(expected.getBalance()));
+            assertThat(v.getWithdrawal(), comparesEqualTo(expected.getWithdrawal()));
+            for (int i = 0; i <= 5; i++) {
+                LocalDate day = businessDay.day(i);
+                assertThat(v.amount(day), comparesEqualTo(expected.amount(day)));
+            }
+        });
+    }
+
+}
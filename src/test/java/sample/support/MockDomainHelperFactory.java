@@ -1,10 +1,11 @@
 package sample.support;
 
-import java.time.Clock;
+import java.time.*;
 import java.util.*;
 
 import sample.context.*;
 import sample.context.actor.ActorSession;
+import sample.context.cache.CacheHandler;
 
 public class MockDomainHelperFactory {
 
@@ -26,7 +27,8 @@ public class MockDomainHelperFactory {
         return new DomainHelper(
                 SimpleProvider.of(new ActorSession(Optional.empty(), "sample")),
                 SimpleProvider.of(new Timestamper(mockClock)),
-                SimpleProvider.of(new AppSettingHandler(new HashMap<>())));
+                SimpleProvider.of(new AppSettingHandler(new HashMap<>())),
+                SimpleProvider.of(new CacheHandler(false, 0, Duration.ZERO, Optional.empty())));
     }
 
 }